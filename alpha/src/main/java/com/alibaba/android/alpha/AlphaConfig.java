@@ -17,9 +17,15 @@
 package com.alibaba.android.alpha;
 
 import android.content.Context;
+import android.os.Build;
 
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +37,16 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class AlphaConfig {
 
+    /**
+     * 默认线程池的名称，适合计算密集型的{@code task}，参见{@link Task#setExecutorName(String)}
+     */
+    public static final String EXECUTOR_CPU = "cpu";
+
+    /**
+     * IO线程池的名称，适合读写文件、数据库等IO密集型的{@code task}，参见{@link Task#setExecutorName(String)}
+     */
+    public static final String EXECUTOR_IO = "io";
+
     /**
      * 日志输出开关，默认是打开的
      */
@@ -38,9 +54,31 @@ public class AlphaConfig {
     private static int sCoreThreadNum = Runtime.getRuntime().availableProcessors();
     private static ThreadFactory sThreadFactory;
     private static ExecutorService sExecutor;
+    private static boolean sIsCustomExecutor = false;
+    private static ExecutorService sForegroundExecutor;
+    private static ExecutorService sBackgroundExecutor;
+    private static ScheduledExecutorService sWatchdog;
     private static int sWarningTime = 400;
     private static boolean sShowToastToAlarm = false;
     private static Context sContext;
+    private static boolean sIsCriticalPathFirst = false;
+    private static boolean sIsWorkStealing = false;
+    private static boolean sIsHelpWhileWaiting = false;
+    private static long sMainThreadDrainBudget = 8;
+    private static boolean sIsMainThreadAsyncMessage = false;
+    private static int sIdleTaskCountPerWindow = 1;
+    private static volatile ExecuteHistory sExecuteHistory;
+    private static boolean sIsProfileGuided = false;
+
+    /**
+     * 除默认线程池以外，按名称注册的线程池
+     */
+    private static final ConcurrentHashMap<String, ExecutorService> sExecutors = new ConcurrentHashMap<String, ExecutorService>();
+
+    /**
+     * 默认线程池的缓存队列，使用自定义线程池或者工作窃取模式时为{@code null}
+     */
+    private static TaskQueue sTaskQueue;
 
     //==============================================================================================
     // PUBLIC API
@@ -67,12 +105,143 @@ public class AlphaConfig {
 
     /**
      * 设置执行{@code task}的线程池，默认线程池，核心线程池数是CPU数，缓存队列无穷大。包括核心线程在内，当线程空闲
-     * 超过1分钟，会将线程释放。
+     * 超过1分钟，会将线程释放。默认线程池会按照线程优先级分段，设置之后所有{@code task}都在这个线程池中执行，不再分段。
      *
      * @param executorService 执行{@code task}的线程池
      */
     public static void setExecutorService(ExecutorService executorService) {
         sExecutor = executorService;
+        sIsCustomExecutor = executorService != null;
+    }
+
+    /**
+     * <p>按名称注册执行{@code task}的线程池，通过{@link Task#setExecutorName(String)}或者tasklist.xml中的
+     * {@code executor}属性指定{@code task}在哪个线程池中执行。</p>
+     * <p>{@link #EXECUTOR_CPU}即默认线程池，通过{@link #setExecutorService(ExecutorService)}设置；
+     * {@link #EXECUTOR_IO}默认是一个线程数不受限制、空闲线程30秒后释放的线程池，也可以在这里替换。不同线程池中的
+     * {@code task}之间的依赖关系不受影响。</p>
+     * <strong>注意：</strong>需要在创建使用该线程池的{@code Project}以及解析tasklist.xml之前调用，否则
+     * {@link Project.Builder#create()}会抛出异常。
+     *
+     * @param name            线程池名称
+     * @param executorService 执行{@code task}的线程池
+     */
+    public static void registerExecutor(String name, ExecutorService executorService) {
+        if (EXECUTOR_CPU.equals(name)) {
+            setExecutorService(executorService);
+        } else {
+            sExecutors.put(name, executorService);
+        }
+    }
+
+    /**
+     * <p>设置默认线程池是否按照关键路径调度，默认是关闭的。</p>
+     * <p>关闭时，默认线程池的缓存队列按照提交的先后顺序执行；开启后，缓存队列中的{@code task}会按照它到{@code Project}
+     * 结束点的最长路径排序，路径越长越先执行，路径长度相同时再比较{@link Task#getExecutePriority()}。路径长度由依赖关系和
+     * 每个{@code task}的预估耗时计算得出，预估耗时取该{@code task}最近一次的执行记录。</p>
+     * <strong>注意：</strong>需要在创建第一个{@code task}之前调用，并且对通过{@link #setExecutorService(ExecutorService)}
+     * 设置的线程池不生效。
+     *
+     * @param isCriticalPathFirst {@code true}按照关键路径调度，否则按照提交顺序调度。
+     */
+    public static void setCriticalPathFirst(boolean isCriticalPathFirst) {
+        sIsCriticalPathFirst = isCriticalPathFirst;
+    }
+
+    /**
+     * <p>设置是否使用工作窃取模式执行{@code task}，默认是关闭的。</p>
+     * <p>开启后，默认线程池会换成每个线程各自持有任务队列的{@link java.util.concurrent.ForkJoinPool}，线程空闲时从其他线程的队列中窃取任务。
+     * 同时，一个{@code task}在线程池中执行完成后，因它而就绪的紧后{@code task}中优先级最高的一个会直接在当前线程中
+     * 接着执行，其余的放入当前线程自己的队列，不再经过共享队列的排队和线程切换。对于A→B→C→D这样的长依赖链效果明显。</p>
+     * <strong>注意：</strong>需要在创建第一个{@code task}之前调用。{@link java.util.concurrent.ForkJoinPool}要求Android 5.0及以上，
+     * 低版本上默认线程池仍然使用普通线程池，只保留紧后{@code task}直接执行的优化。工作窃取模式下
+     * {@link #setCriticalPathFirst(boolean)}和{@link #setThreadFactory(ThreadFactory)}对默认线程池不生效。
+     *
+     * @param isWorkStealing {@code true}使用工作窃取模式，否则使用普通线程池。
+     */
+    public static void setWorkStealing(boolean isWorkStealing) {
+        sIsWorkStealing = isWorkStealing;
+    }
+
+    /**
+     * <p>设置等待{@code task}执行完成时是否帮忙执行{@code task}，默认是关闭的。</p>
+     * <p>开启后，在{@link AlphaManager#waitUntilFinish()}、{@link AlphaManager#awaitTask(String)}以及
+     * {@link TaskHandle#await()}等函数中阻塞的线程不再只是等待，而是从默认线程池的缓存队列中取出就绪的{@code task}
+     * 直接执行，直到等待的条件满足。这样冷启动时阻塞的主线程也能分担工作，在线程池的线程中等待也不会再死锁。
+     * 在UI线程执行的{@code task}不在缓存队列中，不会被取出执行。</p>
+     * <strong>注意：</strong>只对默认线程池生效，工作窃取模式和通过{@link #setExecutorService(ExecutorService)}
+     * 设置的线程池仍然只是等待。只会执行默认优先级分段的{@code task}，执行期间修改的线程优先级在执行完后恢复。
+     *
+     * @param isHelpWhileWaiting {@code true}等待时帮忙执行{@code task}，否则只是等待。
+     */
+    public static void setHelpWhileWaiting(boolean isHelpWhileWaiting) {
+        sIsHelpWhileWaiting = isHelpWhileWaiting;
+    }
+
+    /**
+     * <p>设置每个主线程消息中连续执行UI线程{@code task}的时间预算，单位毫秒，默认是8毫秒。</p>
+     * <p>同一时间就绪的UI线程{@code task}会合并到一个主线程消息中按照执行优先级依次执行，超出预算后剩下的
+     * {@code task}放到下一个消息中，让出主线程处理输入和绘制。每个消息至少执行一个{@code task}，
+     * 小于等于0表示不限制。</p>
+     *
+     * @param budget 时间预算，单位毫秒
+     */
+    public static void setMainThreadDrainBudget(long budget) {
+        sMainThreadDrainBudget = budget;
+    }
+
+    /**
+     * 设置执行UI线程{@code task}的主线程消息是否使用异步消息，默认是关闭的。异步消息不受同步屏障的影响，
+     * 不需要等待正在进行的绘制，只在Android 5.1及以上生效。
+     *
+     * @param isAsyncMessage {@code true}使用异步消息，否则使用普通消息。
+     */
+    public static void setMainThreadAsyncMessage(boolean isAsyncMessage) {
+        sIsMainThreadAsyncMessage = isAsyncMessage;
+    }
+
+    /**
+     * 设置主线程每次空闲时最多执行的空闲{@code task}数量，默认是1个，参见{@link Project.Builder#addIdle(Task)}。
+     *
+     * @param count 每次空闲时最多执行的空闲{@code task}数量，至少为1
+     */
+    public static void setIdleTaskCountPerWindow(int count) {
+        if (count <= 0) {
+            //为0时空闲Task永远不会执行，队列一直不空，主线程会不停地被唤醒
+            throw new IllegalArgumentException("count should be positive: " + count);
+        }
+
+        sIdleTaskCountPerWindow = count;
+    }
+
+    /**
+     * 设置保存跨启动的{@code task}耗时记录的{@link ExecuteHistory}，默认不保存。设置之后每个{@code Project}执行结束时
+     * 在IO线程中追加记录，可以通过{@link ExecuteHistory#getTaskHistories()}查看每个{@code task}耗时的分位数。
+     *
+     * @param history 耗时记录，{@code null}表示不保存
+     */
+    public static void setExecuteHistory(ExecuteHistory history) {
+        sExecuteHistory = history;
+        ExecuteMonitor.loadHistoryIfNeeded();
+    }
+
+    /**
+     * <p>设置是否根据之前几次启动的耗时记录自动安排执行顺序，默认是关闭的，需要同时通过
+     * {@link #setExecuteHistory(ExecuteHistory)}设置耗时记录。</p>
+     * <p>开启并且设置了耗时记录后，在IO线程中读取一次耗时记录，每个{@code task}的预估耗时取之前几次启动执行时间的
+     * 指数加权平均（{@link TaskHistory#getSmoothedDuration()}），本次启动中执行完成后再用新的执行时间更新，没有记录的
+     * {@code task}以及读取完成之前开始执行的{@code Project}使用默认值。每个{@code Project}开始执行时按照预估耗时计算每个{@code task}到结束点的最长路径，
+     * 线程池缓存队列中路径越长越先执行，不再需要根据设备手动调整{@code executePriority}。手动设置了
+     * {@link Task#setExecutePriority(int)}的{@code task}仍然优先按照执行优先级排序，没有设置的按照路径排序。</p>
+     * <strong>注意：</strong>需要在创建第一个{@code task}之前调用，开启后{@link #setCriticalPathFirst(boolean)}不再生效，
+     * 并且对通过{@link #setExecutorService(ExecutorService)}设置的线程池以及工作窃取模式的默认线程池不生效。
+     * 为了尽早读取耗时记录，最好在{@code Application}创建时调用。
+     *
+     * @param isProfileGuided {@code true}根据耗时记录调度，否则按照原来的方式调度。
+     */
+    public static void setProfileGuided(boolean isProfileGuided) {
+        sIsProfileGuided = isProfileGuided;
+        ExecuteMonitor.loadHistoryIfNeeded();
     }
 
     /**
@@ -112,9 +281,13 @@ public class AlphaConfig {
         return sIsLoggable;
     }
 
+    /*package*/ static ExecuteHistory getExecuteHistory() {
+        return sExecuteHistory;
+    }
+
     /*package*/ static ThreadFactory getThreadFactory() {
         if (sThreadFactory == null) {
-            sThreadFactory = getDefaultThreadFactory();
+            sThreadFactory = getDefaultThreadFactory("Alpha Thread #");
         }
 
         return sThreadFactory;
@@ -128,6 +301,90 @@ public class AlphaConfig {
         return sExecutor;
     }
 
+    /**
+     * <p>默认线程池按照线程优先级分段，高于默认优先级的{@code task}在前台分段中执行，不高于
+     * {@link android.os.Process#THREAD_PRIORITY_BACKGROUND}的在后台分段中执行，其余的在默认线程池中执行。
+     * 分段线程池的线程创建时就设置好优先级，执行同一分段的{@code task}时不需要再修改。</p>
+     * <p>通过{@link #setExecutorService(ExecutorService)}设置了自定义线程池时不分段。</p>
+     *
+     * @param band 优先级分段，参见{@link ThreadPriority#getBand(int)}
+     * @return 执行该分段{@code task}的线程池
+     */
+    /*package*/ static synchronized ExecutorService getBandExecutor(int band) {
+        if (sIsCustomExecutor || band == ThreadPriority.BAND_DEFAULT) {
+            return getExecutor();
+        }
+
+        if (band == ThreadPriority.BAND_FOREGROUND) {
+            if (sForegroundExecutor == null) {
+                sForegroundExecutor = getBandExecutor(band, sCoreThreadNum);
+            }
+
+            return sForegroundExecutor;
+        }
+
+        if (sBackgroundExecutor == null) {
+            sBackgroundExecutor = getBandExecutor(band, Math.max(1, sCoreThreadNum / 2));
+        }
+
+        return sBackgroundExecutor;
+    }
+
+    /**
+     * @param name 线程池名称，{@code null}表示默认线程池
+     * @return 名称对应的线程池是否已经注册，默认线程池和IO线程池总是存在
+     */
+    /*package*/ static boolean hasExecutor(String name) {
+        return name == null || EXECUTOR_CPU.equals(name) || EXECUTOR_IO.equals(name) || sExecutors.containsKey(name);
+    }
+
+    /**
+     * @param name 线程池名称，{@code null}表示默认线程池
+     * @return 名称对应的线程池
+     */
+    /*package*/ static ExecutorService getExecutor(String name) {
+        if (name == null || EXECUTOR_CPU.equals(name)) {
+            return getExecutor();
+        }
+
+        ExecutorService executor = sExecutors.get(name);
+
+        if (executor == null && EXECUTOR_IO.equals(name)) {
+            ExecutorService ioExecutor = getDefaultIOExecutor();
+            executor = sExecutors.putIfAbsent(name, ioExecutor);
+
+            if (executor == null) {
+                executor = ioExecutor;
+            } else {
+                ioExecutor.shutdown();
+            }
+        }
+
+        if (executor == null) {
+            throw new RuntimeException("No such executor: " + name + ", register it with AlphaConfig.registerExecutor() first.");
+        }
+
+        return executor;
+    }
+
+    /**
+     * @return 检查{@code task}执行超时的线程池，参见{@link Task#setTimeout(long, TimeUnit)}
+     */
+    /*package*/ static synchronized ScheduledExecutorService getWatchdog() {
+        if (sWatchdog == null) {
+            sWatchdog = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Alpha Watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sWatchdog;
+    }
+
     /*package*/ static int getWarmingTime() {
         return sWarningTime;
     }
@@ -140,13 +397,45 @@ public class AlphaConfig {
         return sContext;
     }
 
+    /*package*/ static boolean isCriticalPathFirst() {
+        return sIsCriticalPathFirst;
+    }
+
+    /*package*/ static boolean isProfileGuided() {
+        return sIsProfileGuided;
+    }
+
+    /*package*/ static boolean isWorkStealing() {
+        return sIsWorkStealing;
+    }
+
+    /*package*/ static long getMainThreadDrainBudget() {
+        return sMainThreadDrainBudget;
+    }
+
+    /*package*/ static boolean isMainThreadAsyncMessage() {
+        return sIsMainThreadAsyncMessage;
+    }
+
+    /*package*/ static int getIdleTaskCountPerWindow() {
+        return sIdleTaskCountPerWindow;
+    }
 
-    private static ThreadFactory getDefaultThreadFactory() {
+    /**
+     * @return 等待时可以帮忙执行{@code task}的缓存队列，没有开启{@link #setHelpWhileWaiting(boolean)}或者不是默认
+     * 线程池时返回{@code null}。
+     */
+    /*package*/ static TaskQueue getHelpQueue() {
+        return sIsHelpWhileWaiting ? sTaskQueue : null;
+    }
+
+
+    private static ThreadFactory getDefaultThreadFactory(final String namePrefix) {
         ThreadFactory defaultFactory = new ThreadFactory() {
             private final AtomicInteger mCount = new AtomicInteger(1);
 
             public Thread newThread(Runnable r) {
-                return new Thread(r, "Alpha Thread #" + mCount.getAndIncrement());
+                return new Thread(r, namePrefix + mCount.getAndIncrement());
             }
         };
 
@@ -158,12 +447,65 @@ public class AlphaConfig {
     //==============================================================================================
 
     private static ExecutorService getDefaultExecutor() {
+        if (sIsWorkStealing) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                return WorkStealingExecutor.create(sCoreThreadNum);
+            }
+
+            AlphaLog.w(AlphaLog.GLOBAL_TAG, "ForkJoinPool is not supported before Android 5.0, use ThreadPoolExecutor instead.");
+        }
+
+        //使用优先队列，被AlphaManager.require()提前的task可以重新排到队列的最前面
+        Comparator<Runnable> comparator = getQueueComparator();
+        sTaskQueue = new TaskQueue(comparator);
+
         ThreadPoolExecutor executor = new ThreadPoolExecutor(sCoreThreadNum, sCoreThreadNum,
                 60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(),
+                sTaskQueue,
                 getThreadFactory());
         executor.allowCoreThreadTimeOut(true);
 
         return executor;
     }
+
+    private static Comparator<Runnable> getQueueComparator() {
+        if (sIsProfileGuided) {
+            return AlphaUtils.getProfileGuidedComparator();
+        }
+
+        return sIsCriticalPathFirst ? AlphaUtils.getCriticalPathComparator() : AlphaUtils.getSubmitOrderComparator();
+    }
+
+    private static ExecutorService getBandExecutor(final int band, int threadNum) {
+        final ThreadFactory threadFactory = getThreadFactory();
+        ThreadFactory bandFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return threadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        ThreadPriority.set(band);
+                        r.run();
+                    }
+                });
+            }
+        };
+
+        Comparator<Runnable> comparator = getQueueComparator();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadNum, threadNum,
+                60L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(11, comparator),
+                bandFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    private static ExecutorService getDefaultIOExecutor() {
+        //IO密集型的task大部分时间在等待，线程数不受CPU数限制，有task提交时没有空闲线程就创建新的线程
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                30L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                getDefaultThreadFactory("Alpha IO Thread #"));
+    }
 }
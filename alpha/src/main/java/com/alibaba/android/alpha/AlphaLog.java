@@ -68,6 +68,12 @@ public class AlphaLog {
         }
     }
 
+    public static void w(String tag, Object obj) {
+        if (AlphaConfig.isLoggable()) {
+            Log.w(tag, obj.toString());
+        }
+    }
+
     public static void w(Exception e) {
         if (AlphaConfig.isLoggable()) {
             e.printStackTrace();
@@ -26,6 +26,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>这个类的职责是将由构造完成的{@code Project}配置不同的模式，满足不同的进程有不同的初始化的需要。</p>
@@ -53,6 +57,21 @@ public class AlphaManager {
      */
     private Task mProjectForCurrentProcess;
 
+    /**
+     * 当前进程正在执行的{@code Project}
+     */
+    private volatile Project mRunningProject;
+
+    /**
+     * 按名称查找{@code task}的{@code Project}，启动流程结束后保留到所有空闲{@code task}执行完成
+     */
+    private volatile Project mLookupProject;
+
+    /**
+     * 启动流程中所有{@code task}的名称，{@code mLookupProject}释放后用来检查名称是否正确
+     */
+    private volatile Set<String> mTaskNames;
+
     /**
      * 各种模式对应的启动流程
      */
@@ -148,6 +167,9 @@ public class AlphaManager {
 
         if (project != null) {
             addListeners(project);
+            mTaskNames = project.getGraph().getTaskNames();
+            mLookupProject = project;
+            mRunningProject = project;
             project.start();
         } else {
             AlphaLog.e(AlphaLog.GLOBAL_TAG, "No startup project for current process.");
@@ -243,7 +265,7 @@ public class AlphaManager {
      * @param in XML文件输入流
      */
     public void addProjectsViaFile(InputStream in) {
-        ConfigParser parser = new ConfigParser();
+        ConfigParser parser = createConfigParser();
         List<ConfigParser.ProjectInfo> projectInfoList = parser.parse(in);
 
         //解析配置文件失败，意味着初始化无法进行，及时崩溃。
@@ -251,15 +273,105 @@ public class AlphaManager {
             throw new RuntimeException("Parse alpha config file fail.");
         }
 
-        for (ConfigParser.ProjectInfo projectInfo : projectInfoList) {
-            if (TextUtils.isEmpty(projectInfo.processName)) {
-                addProject(projectInfo.project, projectInfo.mode);
-            } else {
-                addProject(projectInfo.project, projectInfo.processName);
-            }
+        addProjects(projectInfoList);
+    }
+
+    /**
+     * <p>通过编译时由XML配置文件生成的代码来设置启动流程，效果同{@link #addProjectsViaFile(InputStream)}，
+     * 但不需要在启动时解析XML，也不需要通过反射创建{@code task}，参见{@link StartupConfig}。</p>
+     *
+     * @param config 生成的代码中创建的启动流程配置
+     */
+    public void addProjects(StartupConfig config) {
+        addProjects(config.createProjects(createConfigParser()));
+    }
+
+
+    /**
+     * <p>声明马上需要名称为{@code taskName}的{@code task}的执行结果，例如第一个{@code Activity}需要的图片库。
+     * 该{@code task}以及它所有尚未完成的前置{@code task}会被提前，排到线程池缓存队列的最前面，
+     * 不再排在无关的{@code task}之后。启动流程结束后尚未执行的空闲{@code task}同样可以被提前。</p>
+     * <p><strong>注意：</strong>需要在{@link #start()}之后调用。已经在缓存队列中的{@code task}只有在默认线程池
+     * （非工作窃取模式）或者UI线程中执行时才能被重新排序。</p>
+     *
+     * @param taskName {@code task}的名称，也可以是嵌套的{@code Project}的名称。
+     * @return 可以用来等待该{@code task}执行完成的{@code TaskHandle}。
+     */
+    public TaskHandle require(String taskName) {
+        Project project = mLookupProject;
+
+        if (project == null) {
+            checkTaskName(taskName);
+            return new TaskHandle(taskName, new CountDownLatch(0));
+        }
+
+        return project.require(taskName);
+    }
+
+    /**
+     * <p>阻塞当前线程，直到名称为{@code taskName}的{@code task}执行完成。与{@link #waitUntilFinish()}不同，
+     * 只等待需要的{@code task}，而不是整个启动流程。</p>
+     * <p><strong>注意：</strong>需要在{@link #start()}之后调用，死锁风险同{@link #waitUntilFinish()}。</p>
+     *
+     * @param taskName {@code task}的名称，也可以是嵌套的{@code Project}的名称。
+     */
+    public void awaitTask(String taskName) {
+        Task task = getRunningTask(taskName);
+
+        if (task != null) {
+            awaitTask(task);
         }
     }
 
+    /**
+     * 阻塞当前线程，直到名称为{@code taskName}的{@code task}执行完成或者超时。
+     *
+     * @param taskName {@code task}的名称，也可以是嵌套的{@code Project}的名称。
+     * @param timeout  最长等待时间
+     * @param unit     {@code timeout}的单位
+     * @return {@code true}该{@code task}已经执行完成，{@code false}等待超时。
+     * @see #awaitTask(String)
+     */
+    public boolean awaitTask(String taskName, long timeout, TimeUnit unit) {
+        Task task = getRunningTask(taskName);
+        return task == null || awaitTask(task, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * 阻塞当前线程，直到所有{@code taskNames}对应的{@code task}都执行完成。
+     *
+     * @param taskNames {@code task}的名称，也可以是嵌套的{@code Project}的名称。
+     * @see #awaitTask(String)
+     */
+    public void awaitTasks(String... taskNames) {
+        for (String taskName : taskNames) {
+            awaitTask(taskName);
+        }
+    }
+
+    /**
+     * 阻塞当前线程，直到所有{@code taskNames}对应的{@code task}都执行完成或者超时，{@code timeout}是等待所有
+     * {@code task}的总时间。
+     *
+     * @param timeout   最长等待时间
+     * @param unit      {@code timeout}的单位
+     * @param taskNames {@code task}的名称，也可以是嵌套的{@code Project}的名称。
+     * @return {@code true}所有{@code task}都已经执行完成，{@code false}等待超时。
+     * @see #awaitTask(String)
+     */
+    public boolean awaitTasks(long timeout, TimeUnit unit, String... taskNames) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (String taskName : taskNames) {
+            Task task = getRunningTask(taskName);
+
+            if (task != null && !awaitTask(task, deadline)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 
     /**
      * 判断当前进程的启动流程是否执行完成。
@@ -476,9 +588,17 @@ public class AlphaManager {
      * <p><strong>注意：如果你在执行task的线程上调用该函数，则存在死锁的风险。</strong></p>
      * <p>例如: <br>
      * 有一个{@code task}在线程A中执行，然后在该线程中调用这个函数，则可能导致死锁。因为此处block需要任务执行
-     * 完才能release，而任务又需要在线程A执行。所以应该确保不在执行{@code task}的线程中调用该函数。</p>
+     * 完才能release，而任务又需要在线程A执行。所以应该确保不在执行{@code task}的线程中调用该函数。
+     * 开启{@link AlphaConfig#setHelpWhileWaiting(boolean)}后，等待的线程会帮忙执行线程池中的{@code task}，
+     * 不再有这个问题。</p>
      */
     public void waitUntilFinish(){
+        Project project = mRunningProject;
+        if (project != null && AlphaConfig.getHelpQueue() != null) {
+            //帮忙执行task直到结束锚点执行完成，再等待下面的结束回调
+            AlphaUtils.await(project.getFinishLatch(), 0, false);
+        }
+
         synchronized (sWaitFinishLock) {
             while (!mIsStartupFinished) {
                 try {
@@ -502,28 +622,62 @@ public class AlphaManager {
      * @return {@code true}等待超时，启动任务有可能没有结束；{@code false}等待未超时，启动顺利结束。
      */
     public boolean waitUntilFinish(final long timeout) {
-        long start = System.currentTimeMillis();
-        long waitTime = 0;
+        //每次只等待剩余的时间，被提前唤醒时不会超出timeout
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        Project project = mRunningProject;
+        if (project != null && AlphaConfig.getHelpQueue() != null) {
+            AlphaUtils.await(project.getFinishLatch(), deadline, true);
+        }
 
         synchronized (sWaitFinishLock) {
-            while (!mIsStartupFinished && waitTime < timeout) {
+            long remaining = deadline - System.nanoTime();
+
+            while (!mIsStartupFinished && remaining > 0) {
                 try {
-                    sWaitFinishLock.wait(timeout);
+                    TimeUnit.NANOSECONDS.timedWait(sWaitFinishLock, remaining);
                 } catch (InterruptedException e) {
                     AlphaLog.w(e);
                 }
 
-                waitTime = System.currentTimeMillis() - start;
+                remaining = deadline - System.nanoTime();
             }
         }
 
-        return waitTime > timeout;
+        return !mIsStartupFinished;
+    }
+
+    /**
+     * 取消正在执行的启动流程，尚未执行的{@code task}不再执行，正在执行的{@code task}所在的线程会被中断，
+     * 启动流程立即结束，参见{@link Project#cancel()}。启动流程没有在执行时不做任何事情。
+     */
+    public void cancel() {
+        Project project = mRunningProject;
+
+        if (project != null) {
+            project.cancel();
+        }
     }
 
 
     //==============================================================================================
     // PRIVATE API
     //==============================================================================================
+    private ConfigParser createConfigParser() {
+        //先确定当前进程，只创建在当前进程执行的Project
+        return new ConfigParser(AlphaUtils.getCurrProcessName(mContext), AlphaUtils.isInMainProcess(mContext));
+    }
+
+    private void addProjects(List<ConfigParser.ProjectInfo> projectInfoList) {
+        for (ConfigParser.ProjectInfo projectInfo : projectInfoList) {
+            if (TextUtils.isEmpty(projectInfo.processName)) {
+                addProject(projectInfo.project, projectInfo.mode);
+            } else {
+                addProject(projectInfo.project, projectInfo.processName);
+            }
+        }
+    }
+
     private void addListeners(Project project) {
         project.addOnTaskFinishListener(new Task.OnTaskFinishListener() {
             @Override
@@ -536,6 +690,68 @@ public class AlphaManager {
 
         project.addOnProjectExecuteListener(mProjectExecuteListener);
 
+        //空闲task可能在启动流程结束之后才执行，全部结束后才释放按名称查找用的Project
+        List<Task> idleTasks = project.getIdleTasks();
+        final AtomicInteger remaining = new AtomicInteger(idleTasks.size() + 1);
+        Task.OnTaskFinishListener releaseListener = new Task.OnTaskFinishListener() {
+            @Override
+            public void onTaskFinish(String taskName) {
+                if (remaining.decrementAndGet() == 0) {
+                    mLookupProject = null;
+                }
+            }
+        };
+
+        project.addOnTaskFinishListener(releaseListener);
+        for (Task task : idleTasks) {
+            task.addOnTaskFinishListener(releaseListener);
+        }
+    }
+
+    /**
+     * @return 启动流程中名称为{@code taskName}的{@code task}，包括启动流程结束后尚未执行的空闲{@code task}；
+     * 所有{@code task}都已经执行完成时返回{@code null}。
+     */
+    private Task getRunningTask(String taskName) {
+        Project project = mLookupProject;
+
+        if (project == null) {
+            checkTaskName(taskName);
+            return null;
+        }
+
+        Task task = project.getTask(taskName);
+        if (task == null) {
+            throw new RuntimeException("No such task: " + taskName);
+        }
+
+        return task;
+    }
+
+    /**
+     * 启动流程的所有{@code task}都已经结束时，检查{@code taskName}是否属于当前进程的启动流程。
+     */
+    private void checkTaskName(String taskName) {
+        Set<String> taskNames = mTaskNames;
+
+        if (taskNames == null) {
+            throw new RuntimeException("Startup project is not running, you should call this after start().");
+        }
+
+        if (!taskNames.contains(taskName)) {
+            throw new RuntimeException("No such task: " + taskName);
+        }
+    }
+
+    private void awaitTask(Task task) {
+        //已经完成的task直接返回，不需要创建闩锁
+        if (!task.isFinished()) {
+            AlphaUtils.await(task.getFinishLatch(), 0, false);
+        }
+    }
+
+    private boolean awaitTask(Task task, long deadline) {
+        return task.isFinished() || AlphaUtils.await(task.getFinishLatch(), deadline, true);
     }
 
     private void releaseWaitFinishLock() {
@@ -548,6 +764,7 @@ public class AlphaManager {
      * 当启动流程完成，相应的资源应该及时释放。
      */
     private void recycle() {
+        mRunningProject = null;
         mProjectForCurrentProcess = null;
         mProjectArray.clear();
     }
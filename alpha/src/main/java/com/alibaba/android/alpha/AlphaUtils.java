@@ -26,6 +26,8 @@ import java.io.FileInputStream;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.alibaba.android.alpha.AlphaManager.ALL_PROCESS_MODE;
 import static com.alibaba.android.alpha.AlphaManager.MAIN_PROCESS_MODE;
@@ -45,6 +47,77 @@ public class AlphaUtils {
         }
     };
 
+    /**
+     * 默认线程池缓存队列的排序规则：按照提交顺序执行。
+     */
+    private static Comparator<Runnable> sSubmitOrderComparator = new QueueComparator() {
+        @Override
+        int compareTask(Task lhs, Task rhs) {
+            return compareDispatchSequence(lhs, rhs);
+        }
+    };
+
+    /**
+     * UI线程{@code task}队列的排序规则：按照执行优先级，优先级相同时按照提交顺序。
+     */
+    private static Comparator<Runnable> sExecutePriorityComparator = new QueueComparator() {
+        @Override
+        int compareTask(Task lhs, Task rhs) {
+            int lhsPriority = lhs.getExecutePriority();
+            int rhsPriority = rhs.getExecutePriority();
+            if (lhsPriority != rhsPriority) {
+                return lhsPriority < rhsPriority ? -1 : 1;
+            }
+
+            return compareDispatchSequence(lhs, rhs);
+        }
+    };
+
+    /**
+     * 关键路径调度时线程池缓存队列的排序规则：到结束点的路径越长越先执行，其次按照执行优先级，最后按照提交顺序。
+     */
+    private static Comparator<Runnable> sCriticalPathComparator = new QueueComparator() {
+        @Override
+        int compareTask(Task lhs, Task rhs) {
+            long lhsPath = lhs.getCriticalPathTime();
+            long rhsPath = rhs.getCriticalPathTime();
+            if (lhsPath != rhsPath) {
+                return lhsPath > rhsPath ? -1 : 1;
+            }
+
+            int lhsPriority = lhs.getExecutePriority();
+            int rhsPriority = rhs.getExecutePriority();
+            if (lhsPriority != rhsPriority) {
+                return lhsPriority < rhsPriority ? -1 : 1;
+            }
+
+            return compareDispatchSequence(lhs, rhs);
+        }
+    };
+
+    /**
+     * 根据历史耗时调度时线程池缓存队列的排序规则：手动设置的执行优先级优先，其次到结束点的路径越长越先执行，
+     * 最后按照提交顺序。没有手动设置执行优先级的{@code task}优先级都相同，只按照路径排序。
+     */
+    private static Comparator<Runnable> sProfileGuidedComparator = new QueueComparator() {
+        @Override
+        int compareTask(Task lhs, Task rhs) {
+            int lhsPriority = lhs.getExecutePriority();
+            int rhsPriority = rhs.getExecutePriority();
+            if (lhsPriority != rhsPriority) {
+                return lhsPriority < rhsPriority ? -1 : 1;
+            }
+
+            long lhsPath = lhs.getCriticalPathTime();
+            long rhsPath = rhs.getCriticalPathTime();
+            if (lhsPath != rhsPath) {
+                return lhsPath > rhsPath ? -1 : 1;
+            }
+
+            return compareDispatchSequence(lhs, rhs);
+        }
+    };
+
     /**
      * 根据{@code task}的执行优先级，对其进行排序。
      *
@@ -58,6 +131,69 @@ public class AlphaUtils {
         Collections.sort(tasks, sTaskComparator);
     }
 
+    /**
+     * @return 默认线程池缓存队列使用的{@code Comparator}。
+     */
+    /*package*/ static Comparator<Runnable> getSubmitOrderComparator() {
+        return sSubmitOrderComparator;
+    }
+
+    /**
+     * @return UI线程{@code task}队列使用的{@code Comparator}。
+     */
+    /*package*/ static Comparator<Runnable> getExecutePriorityComparator() {
+        return sExecutePriorityComparator;
+    }
+
+    /**
+     * @return 关键路径调度时，线程池缓存队列使用的{@code Comparator}。
+     */
+    /*package*/ static Comparator<Runnable> getCriticalPathComparator() {
+        return sCriticalPathComparator;
+    }
+
+    /**
+     * @return 根据历史耗时调度时，线程池缓存队列使用的{@code Comparator}。
+     */
+    /*package*/ static Comparator<Runnable> getProfileGuidedComparator() {
+        return sProfileGuidedComparator;
+    }
+
+    /**
+     * 等待{@code latch}打开。开启了{@link AlphaConfig#setHelpWhileWaiting(boolean)}时，等待期间帮忙执行缓存队列中的
+     * {@code task}。
+     *
+     * @param latch    等待的条件
+     * @param deadline 超时的时间点，与{@link System#nanoTime()}比较
+     * @param isTimed  是否有超时
+     * @return {@code true}条件已经满足，{@code false}等待超时。
+     */
+    /*package*/ static boolean await(CountDownLatch latch, long deadline, boolean isTimed) {
+        TaskQueue helpQueue = AlphaConfig.getHelpQueue();
+        if (helpQueue != null) {
+            return helpQueue.helpUntil(latch, deadline, isTimed);
+        }
+
+        while (latch.getCount() > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (isTimed && remaining <= 0) {
+                return false;
+            }
+
+            try {
+                if (isTimed) {
+                    latch.await(remaining, TimeUnit.NANOSECONDS);
+                } else {
+                    latch.await();
+                }
+            } catch (InterruptedException e) {
+                AlphaLog.w(e);
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Close a {@link Closeable} object safely.
      *
@@ -115,12 +251,21 @@ public class AlphaUtils {
      * @return Name of current process.
      */
     public static String getCurrProcessName(Context context) {
+        //进程名不会变化，只需要读取一次
+        if (sProcessName != null) {
+            return sProcessName;
+        }
+
         String name = getCurrentProcessNameViaLinuxFile();
 
         if (TextUtils.isEmpty(name) && context != null) {
             name = getCurrentProcessNameViaActivityManager(context);
         }
 
+        if (!TextUtils.isEmpty(name)) {
+            sProcessName = name;
+        }
+
         return name;
     }
 
@@ -222,5 +367,44 @@ public class AlphaUtils {
         return false;
     }
 
+    private static int compareDispatchSequence(Task lhs, Task rhs) {
+        long lhsSequence = lhs.getDispatchSequence();
+        long rhsSequence = rhs.getDispatchSequence();
+        return lhsSequence < rhsSequence ? -1 : (lhsSequence == rhsSequence ? 0 : 1);
+    }
+
+    /**
+     * {@code task}队列排序规则的基类：被{@link AlphaManager#require(String)}提前的{@code Task}排在最前面，
+     * 非{@code Task}的{@code Runnable}排在最后面，其余的由子类决定。
+     */
+    private static abstract class QueueComparator implements Comparator<Runnable> {
+
+        @Override
+        public int compare(Runnable lhs, Runnable rhs) {
+            Task lhsTask = getTask(lhs);
+            Task rhsTask = getTask(rhs);
+
+            if (lhsTask == null || rhsTask == null) {
+                //非Task的Runnable排在后面
+                return (lhsTask == null ? 1 : 0) - (rhsTask == null ? 1 : 0);
+            }
 
+            boolean isLhsBoosted = lhsTask.isBoosted();
+            if (isLhsBoosted != rhsTask.isBoosted()) {
+                return isLhsBoosted ? -1 : 1;
+            }
+
+            return compareTask(lhsTask, rhsTask);
+        }
+
+        abstract int compareTask(Task lhs, Task rhs);
+
+        private Task getTask(Runnable runnable) {
+            if (runnable instanceof Task.InternalRunnable) {
+                return ((Task.InternalRunnable) runnable).getTask();
+            }
+
+            return null;
+        }
+    }
 }
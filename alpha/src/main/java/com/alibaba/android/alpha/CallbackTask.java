@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>通过回调通知执行完成的{@code Task}。</p>
+ * <p>普通{@code Task}的{@link #run()}返回即表示执行完成；{@code CallbackTask}在{@link #run(Completion)}中发起异步
+ * 操作后就可以返回，不再占用线程池的线程，等到异步操作结束时调用{@link Completion#done()}，紧后{@code Task}才会开始
+ * 执行。记录的耗时是从开始执行到调用{@link Completion#done()}的时间。</p>
+ * <strong>注意：</strong>必须且只能调用一次{@link Completion#done()}，否则紧后{@code Task}不会执行，
+ * 等待{@code Project}执行完成的线程也会一直阻塞。紧后{@code Task}的分发以及{@code OnTaskFinishListener}的回调
+ * 都在调用{@link Completion#done()}的线程中进行。
+ */
+public abstract class CallbackTask extends Task {
+
+    public CallbackTask(String name) {
+        super(name);
+    }
+
+    public CallbackTask(String name, int threadPriority) {
+        super(name, threadPriority);
+    }
+
+    public CallbackTask(String name, boolean isInUiThread) {
+        super(name, isInUiThread);
+    }
+
+    /**
+     * 在其中发起异步操作，异步操作结束时调用{@code completion}的{@link Completion#done()}。
+     *
+     * @param completion 通知该{@code Task}执行完成的句柄
+     */
+    public abstract void run(Completion completion);
+
+    @Override
+    public final void run() {
+        run(new Completion());
+    }
+
+    @Override
+    boolean isCompletedByCallback() {
+        return true;
+    }
+
+    /**
+     * 通知{@link CallbackTask}执行完成的句柄，可以在任意线程调用。
+     */
+    public final class Completion {
+        private final AtomicBoolean mIsDone = new AtomicBoolean();
+
+        private Completion() {
+        }
+
+        /**
+         * 通知该{@code Task}执行完成，紧后{@code Task}开始执行。
+         */
+        public void done() {
+            if (!mIsDone.compareAndSet(false, true)) {
+                throw new RuntimeException("Task " + mName + " has already been done.");
+            }
+
+            finish(false);
+        }
+    }
+}
@@ -50,6 +50,10 @@ class ConfigParser {
     private static final String ATTRIBUTE_PROCESS_NAME = "process";
     private static final String ATTRIBUTE_THREAD_PRIORITY = "threadPriority";
     private static final String ATTRIBUTE_EXECUTE_PRIORITY = "executePriority";
+    private static final String ATTRIBUTE_TRANSITIVE_REDUCTION = "transitiveReduction";
+    private static final String ATTRIBUTE_IDLE = "idle";
+    private static final String ATTRIBUTE_EXECUTOR = "executor";
+    private static final String ATTRIBUTE_LAZY = "lazy";
 
     /*******************************启动流程配置文件的属性值关键字**************************************/
     private static final String MODE_ALL_PROCESS = "allProcess";
@@ -57,6 +61,31 @@ class ConfigParser {
     private static final String MODE_SECONDARY_PROCESS = "secondaryProcess";
     private static final String PREDECESSOR_DIVIDER = ",";
 
+    private final boolean mIsFilterProcess;
+    private final String mCurrentProcessName;
+    private final boolean mIsInMainProcess;
+
+    /**
+     * 解析出配置文件中所有的{@code Project}。
+     */
+    public ConfigParser() {
+        mIsFilterProcess = false;
+        mCurrentProcessName = null;
+        mIsInMainProcess = false;
+    }
+
+    /**
+     * 只解析在当前进程执行的{@code Project}，其他{@code <project>}在读取XML时直接跳过，不会创建其中的{@code Task}。
+     *
+     * @param currentProcessName 当前进程名
+     * @param isInMainProcess    当前进程是否是主进程
+     */
+    /*package*/ ConfigParser(String currentProcessName, boolean isInMainProcess) {
+        mIsFilterProcess = true;
+        mCurrentProcessName = currentProcessName;
+        mIsInMainProcess = isInMainProcess;
+    }
+
     /**
      * 解析配置XML文件
      *
@@ -103,7 +132,13 @@ class ConfigParser {
             String name = parser.getName();
 
             if (TAG_PROJECT.equals(name)) {
-                projects.add(readProject(parser));
+                String processName = parser.getAttributeValue(null, ATTRIBUTE_PROCESS_NAME);
+
+                if (isCurrentProcess(readMode(parser), processName)) {
+                    projects.add(readProject(parser));
+                } else {
+                    skip(parser);
+                }
             } else {
                 skip(parser);
             }
@@ -118,6 +153,9 @@ class ConfigParser {
         List<TaskInfo> taskList = new ArrayList<TaskInfo>();
         int mode = readMode(parser);
         String processName = parser.getAttributeValue(null, ATTRIBUTE_PROCESS_NAME);
+        boolean isTransitiveReduction = Boolean.parseBoolean(
+                parser.getAttributeValue(null, ATTRIBUTE_TRANSITIVE_REDUCTION));
+        boolean isLazy = Boolean.parseBoolean(parser.getAttributeValue(null, ATTRIBUTE_LAZY));
 
         while (parser.next() != XmlPullParser.END_TAG) {
             if (parser.getEventType() != XmlPullParser.START_TAG) {
@@ -134,6 +172,8 @@ class ConfigParser {
         }
 
         project = new TaskBundle(mode, processName, taskList);
+        project.isTransitiveReduction = isTransitiveReduction;
+        project.isLazy = isLazy;
         return project;
     }
 
@@ -144,6 +184,8 @@ class ConfigParser {
         String predecessors = parser.getAttributeValue(null, ATTRIBUTE_TASK_PREDECESSOR);
         String threadPriorityStr = parser.getAttributeValue(null, ATTRIBUTE_THREAD_PRIORITY);
         String executePriorityStr = parser.getAttributeValue(null, ATTRIBUTE_EXECUTE_PRIORITY);
+        String idleStr = parser.getAttributeValue(null, ATTRIBUTE_IDLE);
+        String executorName = parser.getAttributeValue(null, ATTRIBUTE_EXECUTOR);
 
         if (TextUtils.isEmpty(name)) {
             throw new RuntimeException("Task name is not set.");
@@ -168,12 +210,45 @@ class ConfigParser {
             info.executePriority = Integer.parseInt(executePriorityStr);
         }
 
+        info.isIdle = Boolean.parseBoolean(idleStr);
+
+        if (!TextUtils.isEmpty(executorName)) {
+            if (!AlphaConfig.hasExecutor(executorName)) {
+                throw new RuntimeException("No such executor: " + executorName + " for task " + name
+                        + ", register it with AlphaConfig.registerExecutor() first.");
+            }
+
+            info.executorName = executorName;
+        }
+
         parser.nextTag();
         parser.require(XmlPullParser.END_TAG, null, TAG_TASK);
         return info;
     }
 
-    private List<String> parsePredecessorId(String predecessorIds) {
+    /**
+     * 判断{@code Project}是否在当前进程执行，规则和{@link AlphaManager#addProject(Task, String)}、
+     * {@link AlphaManager#addProject(Task, int)}相同：设置了进程名时按进程名匹配，否则按执行模式匹配。
+     */
+    /*package*/ boolean isCurrentProcess(int mode, String processName) {
+        if (!mIsFilterProcess) {
+            return true;
+        }
+
+        if (!TextUtils.isEmpty(processName)) {
+            return TextUtils.equals(processName, mCurrentProcessName);
+        }
+
+        if (mode == AlphaManager.MAIN_PROCESS_MODE) {
+            return mIsInMainProcess;
+        } else if (mode == AlphaManager.SECONDARY_PROCESS_MODE) {
+            return !mIsInMainProcess;
+        } else {
+            return true;
+        }
+    }
+
+    /*package*/ static List<String> parsePredecessorId(String predecessorIds) {
         if (TextUtils.isEmpty(predecessorIds)) {
             return null;
         }
@@ -214,44 +289,60 @@ class ConfigParser {
         }
     }
 
-    private ProjectInfo createProject(TaskBundle info) {
+    /**
+     * 根据解析出来的信息创建{@code Project}，通过{@link TaskBundle#taskCreator}创建{@code Task}实例，
+     * 没有设置{@code taskCreator}时通过反射创建。{@link TaskBundle#isLazy}为{@code true}时推迟到
+     * 执行前才创建，参见{@link LazyTask}。
+     */
+    /*package*/ ProjectInfo createProject(TaskBundle info) {
         List<TaskInfo> taskInfos = info.taskList;
         HashMap<String, Task> taskMap = new HashMap<String, Task>();
 
         for (TaskInfo taskInfo : taskInfos) {
-            Task task = null;
-            try {
-                Class<?> c = Class.forName(taskInfo.path);
-                task = (Task) c.newInstance();
-                task.setName(taskInfo.id);
-
-                if (taskInfo.threadPriority != 0) {
-                    task.setThreadPriority(taskInfo.threadPriority);
-                }
+            Task task;
 
-                if (taskInfo.executePriority != Task.DEFAULT_EXECUTE_PRIORITY) {
-                    task.setExecutePriority(taskInfo.executePriority);
+            if (info.taskCreator != null) {
+                task = info.isLazy ? new LazyTask(taskInfo.id, info.taskCreator)
+                        : info.taskCreator.createTask(taskInfo.id);
+
+                if (task == null) {
+                    throw new RuntimeException("ITaskCreator returns null for task: " + taskInfo.id);
                 }
-            } catch (ClassNotFoundException e) {
-                AlphaLog.w(e);
-            } catch (InstantiationException e) {
-                AlphaLog.w(e);
-            } catch (IllegalAccessException e) {
-                AlphaLog.w(e);
+            } else {
+                task = info.isLazy ? new LazyTask(taskInfo.id, taskInfo.path) : newTask(taskInfo.path);
+            }
+
+            task.setName(taskInfo.id);
+
+            if (taskInfo.threadPriority != 0) {
+                task.setThreadPriority(taskInfo.threadPriority);
+            }
+
+            if (taskInfo.executePriority != Task.DEFAULT_EXECUTE_PRIORITY) {
+                task.setExecutePriority(taskInfo.executePriority);
             }
 
-            if (task == null) {
-                throw new RuntimeException("Can not reflect Task: " + taskInfo.path);
+            if (taskInfo.executorName != null) {
+                task.setExecutorName(taskInfo.executorName);
             }
 
-            taskMap.put(taskInfo.id, task);
+            if (taskMap.put(taskInfo.id, task) != null) {
+                throw new RuntimeException("Duplicate task name: " + taskInfo.id);
+            }
         }
 
         Project.Builder builder = new Project.Builder();
+        builder.setTransitiveReduction(info.isTransitiveReduction);
 
         for (TaskInfo taskInfo : taskInfos) {
             Task task = taskMap.get(taskInfo.id);
-            builder.add(task);
+
+            if (taskInfo.isIdle) {
+                builder.addIdle(task);
+            } else {
+                builder.add(task);
+            }
+
             List<String> predecessorList = taskInfo.predecessorList;
 
             if (!predecessorList.isEmpty()) {
@@ -271,10 +362,44 @@ class ConfigParser {
         return result;
     }
 
-    private static class TaskBundle {
+    /**
+     * 通过反射创建{@code Task}实例。
+     *
+     * @param path {@code Task}的类名
+     * @return {@code Task}实例，创建失败时抛出异常
+     */
+    /*package*/ static Task newTask(String path) {
+        Task task = null;
+
+        try {
+            Class<?> c = Class.forName(path);
+            task = (Task) c.newInstance();
+        } catch (ClassNotFoundException e) {
+            AlphaLog.w(e);
+        } catch (InstantiationException e) {
+            AlphaLog.w(e);
+        } catch (IllegalAccessException e) {
+            AlphaLog.w(e);
+        }
+
+        if (task == null) {
+            throw new RuntimeException("Can not reflect Task: " + path);
+        }
+
+        return task;
+    }
+
+    /*package*/ static class TaskBundle {
         public List<TaskInfo> taskList = new ArrayList<TaskInfo>();
         public int mode = AlphaManager.ALL_PROCESS_MODE;
         public String processName = "";
+        public boolean isTransitiveReduction = false;
+        public boolean isLazy = false;
+
+        /**
+         * 根据名称创建{@code Task}实例，为空时通过{@link TaskInfo#path}反射创建
+         */
+        public ITaskCreator taskCreator;
 
         public TaskBundle(int mode, String processName, List<TaskInfo> tasks) {
             this.mode = mode;
@@ -283,12 +408,14 @@ class ConfigParser {
         }
     }
 
-    private static class TaskInfo{
+    /*package*/ static class TaskInfo{
         public String id;
         public String path;
         public List<String> predecessorList = new ArrayList<String>();
         public int threadPriority = 0;
         public int executePriority = Task.DEFAULT_EXECUTE_PRIORITY;
+        public boolean isIdle = false;
+        public String executorName;
 
         public TaskInfo(String id, String path) {
             this.id = id;
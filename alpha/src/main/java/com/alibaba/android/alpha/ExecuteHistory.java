@@ -0,0 +1,367 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>跨启动的{@code task}耗时记录，保存在文件中，用于统计每个{@code task}在最近若干次启动中耗时的分位数，
+ * 通过{@link AlphaConfig#setExecuteHistory(ExecuteHistory)}开启。</p>
+ * <p>每个{@code Project}执行结束后，其中每个{@code task}的执行时间（{@link TaskExecuteRecord#getRunTime()}）
+ * 作为一条记录，在IO线程中一次性追加到文件末尾，不会阻塞启动。同一个进程中执行的所有{@code Project}属于同一次
+ * 启动。多个进程可以使用同一个文件，每个进程的记录各自算作一次启动，互相穿插的记录在读取时按启动标识合并。
+ * 文件达到{@code maxLaunches}次启动时，改名为{@code <文件名>.old}并重新开始记录，因此最多占用两个文件，
+ * 读取时合并两个文件并取最近{@code maxLaunches}次启动。</p>
+ * <p>文件格式：每条记录是一个魔数、版本号、启动标识、{@code task}数量，以及每个{@code task}的名称和以微秒为单位的
+ * 执行时间。进程在写文件时被杀导致的不完整记录在读取时会被跳过，从下一个魔数开始继续读取，之后追加的记录不受影响。</p>
+ */
+public final class ExecuteHistory {
+    /**
+     * 默认保留的启动次数
+     */
+    public static final int DEFAULT_MAX_LAUNCHES = 20;
+
+    private static final int MAGIC = 0x414c5048;
+    private static final int VERSION = 1;
+    private static final String OLD_FILE_SUFFIX = ".old";
+
+    /**
+     * 本次启动的标识，高位取进程中第一次使用时的时间，低22位取进程号，同一毫秒启动的不同进程不会混在一起
+     */
+    private static final long LAUNCH_ID = (System.currentTimeMillis() << 22)
+            | (android.os.Process.myPid() & 0x3fffff);
+
+    private final File mFile;
+    private final File mOldFile;
+    private final int mMaxLaunches;
+
+    /**
+     * 本次启动是否已经检查过是否需要改名为旧文件，由{@code this}保护
+     */
+    private boolean mIsRotationChecked;
+
+    /**
+     * @param file 保存记录的文件，一般放在{@link android.content.Context#getFilesDir()}中
+     */
+    public ExecuteHistory(File file) {
+        this(file, DEFAULT_MAX_LAUNCHES);
+    }
+
+    /**
+     * @param file        保存记录的文件，一般放在{@link android.content.Context#getFilesDir()}中
+     * @param maxLaunches 保留最近多少次启动的记录
+     */
+    public ExecuteHistory(File file, int maxLaunches) {
+        if (maxLaunches <= 0) {
+            throw new IllegalArgumentException("maxLaunches should be positive: " + maxLaunches);
+        }
+
+        mFile = file;
+        mOldFile = new File(file.getPath() + OLD_FILE_SUFFIX);
+        mMaxLaunches = maxLaunches;
+    }
+
+    //==============================================================================================
+    // PUBLIC API
+    //==============================================================================================
+
+    /**
+     * <p>读取最近{@code maxLaunches}次启动的记录，按{@code task}名称汇总。</p>
+     * <strong>注意：</strong>这里会读文件，不要在主线程中调用。
+     *
+     * @return {@code task}名称到它的耗时记录，没有记录时为空
+     */
+    public synchronized Map<String, TaskHistory> getTaskHistories() {
+        Map<Long, Launch> launchMap = new LinkedHashMap<Long, Launch>();
+        readLaunches(mOldFile, launchMap);
+        readLaunches(mFile, launchMap);
+        List<Launch> launches = new ArrayList<Launch>(launchMap.values());
+
+        int from = Math.max(0, launches.size() - mMaxLaunches);
+        Map<String, List<Long>> durations = new HashMap<String, List<Long>>();
+
+        for (int i = from, size = launches.size(); i < size; i++) {
+            for (Map.Entry<String, Long> entry : launches.get(i).durations.entrySet()) {
+                List<Long> list = durations.get(entry.getKey());
+
+                if (list == null) {
+                    list = new ArrayList<Long>();
+                    durations.put(entry.getKey(), list);
+                }
+
+                list.add(entry.getValue());
+            }
+        }
+
+        Map<String, TaskHistory> result = new HashMap<String, TaskHistory>();
+        for (Map.Entry<String, List<Long>> entry : durations.entrySet()) {
+            result.put(entry.getKey(), new TaskHistory(entry.getKey(), entry.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * 读取一个{@code task}最近{@code maxLaunches}次启动的记录，参见{@link #getTaskHistories()}。
+     *
+     * @param taskName {@code task}名称
+     * @return 耗时记录，没有记录时返回{@code null}
+     */
+    public TaskHistory getTaskHistory(String taskName) {
+        return getTaskHistories().get(taskName);
+    }
+
+    /**
+     * 删除所有记录。
+     */
+    public synchronized void clear() {
+        mFile.delete();
+        mOldFile.delete();
+    }
+
+    //==============================================================================================
+    // INNER API
+    //==============================================================================================
+
+    /**
+     * 在IO线程中把一个{@code Project}的执行记录追加到文件，在{@code Project}执行结束时调用。
+     *
+     * @param records {@code Project}中每个{@code task}的执行记录
+     */
+    /*package*/ void append(final List<TaskExecuteRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        AlphaConfig.getExecutor(AlphaConfig.EXECUTOR_IO).execute(new Runnable() {
+            @Override
+            public void run() {
+                write(records);
+            }
+        });
+    }
+
+    //==============================================================================================
+    // PRIVATE METHOD
+    //==============================================================================================
+
+    private synchronized void write(List<TaskExecuteRecord> records) {
+        //先在内存中生成整条记录，一次写入
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        FileOutputStream fileOut = null;
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(LAUNCH_ID);
+            out.writeInt(records.size());
+
+            for (TaskExecuteRecord record : records) {
+                out.writeUTF(record.getTaskName());
+                out.writeInt((int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(record.getRunTime())));
+            }
+
+            //本次启动的第一条记录写入之后文件中就包含本次启动，之后不会再改名，不需要每次都重新读文件
+            if (!mIsRotationChecked) {
+                rotateIfNeed();
+                mIsRotationChecked = true;
+            }
+
+            File parent = mFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            fileOut = new FileOutputStream(mFile, true);
+            buffer.writeTo(fileOut);
+        } catch (IOException e) {
+            AlphaLog.w(e);
+        } finally {
+            AlphaUtils.closeSafely(fileOut);
+        }
+    }
+
+    /**
+     * 文件中已经有{@code maxLaunches}次启动的记录，并且不包括本次启动时，改名为旧文件，重新开始记录。
+     */
+    private void rotateIfNeed() {
+        Map<Long, Launch> launches = new LinkedHashMap<Long, Launch>();
+        readLaunches(mFile, launches);
+
+        if (launches.size() < mMaxLaunches || launches.containsKey(LAUNCH_ID)) {
+            return;
+        }
+
+        mOldFile.delete();
+        if (!mFile.renameTo(mOldFile)) {
+            mFile.delete();
+        }
+    }
+
+    /**
+     * 读取文件中的每一次启动，按第一次出现的顺序追加到{@code launches}。同一次启动的多条记录合并在一起，
+     * 不要求是连续的，多个进程共用一个文件时各自的记录会互相穿插。不完整的记录被跳过，从下一个魔数继续读取。
+     */
+    private static void readLaunches(File file, Map<Long, Launch> launches) {
+        byte[] data = readFile(file);
+        if (data == null) {
+            return;
+        }
+
+        int offset = 0;
+        while (offset < data.length) {
+            int end = readRecord(data, offset, launches);
+
+            if (end < 0) {
+                int next = findHeader(data, offset + 1, data.length);
+                AlphaLog.w(AlphaLog.GLOBAL_TAG, "Execute history file " + file + " is broken at " + offset
+                        + ", skip " + (next - offset) + " bytes.");
+                end = next;
+            }
+
+            offset = end;
+        }
+    }
+
+    /**
+     * 读取从{@code offset}开始的一条记录，合并到{@code launches}中。
+     *
+     * @return 记录结束的位置，记录不完整时返回-1
+     */
+    private static int readRecord(byte[] data, int offset, Map<Long, Launch> launches) {
+        if (!isHeader(data, offset)) {
+            return -1;
+        }
+
+        ByteArrayInputStream buffer = new ByteArrayInputStream(data, offset, data.length - offset);
+        DataInputStream in = new DataInputStream(buffer);
+        long id;
+        Map<String, Long> durations = new LinkedHashMap<String, Long>();
+
+        try {
+            //魔数和版本号已经检查过
+            in.skipBytes(5);
+            id = in.readLong();
+            int count = in.readInt();
+
+            if (count < 0) {
+                return -1;
+            }
+
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                durations.put(name, TimeUnit.MICROSECONDS.toNanos(in.readInt()));
+            }
+        } catch (IOException e) {
+            //读到文件末尾或者名称的编码不对
+            return -1;
+        }
+
+        //写了一半的记录之后又追加了新的记录时，可能把新记录当成自己的内容读完，新记录的魔数出现在中间
+        int end = data.length - buffer.available();
+        if (findHeader(data, offset + 1, end) < end) {
+            return -1;
+        }
+
+        //整条记录读取成功才计入
+        Launch launch = launches.get(id);
+        if (launch == null) {
+            launch = new Launch(id);
+            launches.put(id, launch);
+        }
+
+        launch.durations.putAll(durations);
+        return end;
+    }
+
+    /**
+     * @return {@code [from, to)}中第一条记录开头的位置，没有时返回{@code to}
+     */
+    private static int findHeader(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isHeader(data, i)) {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    private static boolean isHeader(byte[] data, int offset) {
+        return offset + 5 <= data.length
+                && ((data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+                | (data[offset + 2] & 0xff) << 8 | data[offset + 3] & 0xff) == MAGIC
+                && data[offset + 4] == VERSION;
+    }
+
+    /**
+     * @return 文件的全部内容，文件不存在或者读取失败时返回{@code null}
+     */
+    private static byte[] readFile(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        FileInputStream in = null;
+
+        try {
+            in = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+
+            return out.toByteArray();
+        } catch (IOException e) {
+            AlphaLog.w(e);
+            return null;
+        } finally {
+            AlphaUtils.closeSafely(in);
+        }
+    }
+
+
+    //==============================================================================================
+    // INNER CLASSES
+    //==============================================================================================
+
+    private static class Launch {
+        final long id;
+        final Map<String, Long> durations = new LinkedHashMap<String, Long>();
+
+        Launch(long id) {
+            this.id = id;
+        }
+    }
+}
@@ -20,15 +20,65 @@ import android.os.Handler;
 import android.os.Looper;
 import android.widget.Toast;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>监控{@code Project}执行性能的类。会记录每一个{@code Task}执行时间，以及整个{@code Project}执行时间。</p>
+ * <p>{@code Task}执行时只把时间写在自己的字段中，执行完成时不加锁、不分配内存、不输出日志，在{@code Project}
+ * 执行结束时由{@link #recordProjectFinish()}统一汇总并输出日志。</p>
  * Created by zhangshuliang.zsl on 15/11/4.
  */
 class ExecuteMonitor {
+    /**
+     * 没有执行记录的{@code task}的预估耗时，单位微秒
+     */
+    private static final long DEFAULT_ESTIMATED_COST_TIME = 1000;
+
+    /**
+     * 每个{@code task}的预估耗时，单位微秒，不区分{@code Project}。默认取最近一次的执行时间，
+     * 开启{@link AlphaConfig#setProfileGuided(boolean)}后取历次执行时间的指数加权平均。
+     */
+    private static ConcurrentMap<String, Long> sEstimatedCostTimeMap = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * 是否已经开始从{@link ExecuteHistory}中读取预估耗时，由{@code ExecuteMonitor.class}保护
+     */
+    private static boolean sIsHistoryLoaded;
+
+    private static final Comparator<TaskExecuteRecord> FINISH_TIME_COMPARATOR = new Comparator<TaskExecuteRecord>() {
+        @Override
+        public int compare(TaskExecuteRecord lhs, TaskExecuteRecord rhs) {
+            long lhsTime = lhs.getFinishTime();
+            long rhsTime = rhs.getFinishTime();
+            return lhsTime < rhsTime ? -1 : (lhsTime == rhsTime ? 0 : 1);
+        }
+    };
+
     private Map<String, Long> mExecuteTimeMap = new HashMap<String, Long>();
+    private List<TaskExecuteRecord> mExecuteRecords = new ArrayList<TaskExecuteRecord>();
+
+    /**
+     * 组装时登记的{@code Task}，下标即{@link #register(Task)}的返回值
+     */
+    private final List<Task> mTasks = new ArrayList<Task>();
+
+    /**
+     * 每个登记的{@code Task}是否已经汇总，汇总时创建，由{@code this}保护
+     */
+    private boolean[] mCollectedFlags;
+
+    /**
+     * 是否已经汇总过，之后才执行完成的{@code Task}（例如空闲{@code Task}）需要自己调用{@link #collect(int)}
+     */
+    private volatile boolean mIsCollected;
     private long mStartTime;
     private long mProjectCostTime;
     private Handler mHandler;
@@ -40,12 +90,71 @@ class ExecuteMonitor {
      * @param executeTime 执行的时间
      */
     public synchronized void record(String taskName, long executeTime) {
-        AlphaLog.d(AlphaLog.GLOBAL_TAG, "AlphaTask-->Startup task %s cost time: %s ms, in thread: %s", taskName, executeTime, Thread.currentThread().getName());
-        if (executeTime >= AlphaConfig.getWarmingTime()) {
-            toastToWarn("AlphaTask %s run too long, cost time: %s", taskName, executeTime);
+        record(taskName, executeTime, Thread.currentThread().getName());
+        updateEstimatedCostTime(taskName, TimeUnit.MILLISECONDS.toMicros(executeTime));
+    }
+
+    /**
+     * 登记一个{@code Task}，在组装{@code Project}时调用。
+     *
+     * @param task 由该对象监控的{@code Task}
+     * @return 登记的下标
+     */
+    public synchronized int register(Task task) {
+        mTasks.add(task);
+        return mTasks.size() - 1;
+    }
+
+    /**
+     * @return 是否已经汇总过执行记录
+     */
+    public boolean isCollected() {
+        return mIsCollected;
+    }
+
+    /**
+     * 汇总一个在{@code Project}执行结束之后才执行完成的{@code Task}，已经汇总过的不会重复汇总。
+     *
+     * @param index 登记的下标
+     */
+    public synchronized void collect(int index) {
+        collectTask(index);
+    }
+
+    /**
+     * 预估{@code task}的耗时，参见{@link #sEstimatedCostTimeMap}，没有记录时返回一个默认值。
+     *
+     * @param taskName {@code task}的名称
+     * @return 预估的耗时，单位微秒
+     */
+    public static long getEstimatedCostTime(String taskName) {
+        Long costTime = taskName == null ? null : sEstimatedCostTimeMap.get(taskName);
+        return costTime == null ? DEFAULT_ESTIMATED_COST_TIME : costTime;
+    }
+
+    /**
+     * 开启了{@link AlphaConfig#setProfileGuided(boolean)}并且设置了{@link AlphaConfig#setExecuteHistory(ExecuteHistory)}时，
+     * 在IO线程中读取每个{@code task}之前几次启动的执行时间，平滑后作为预估耗时。只读取一次，读取完成之前使用默认的
+     * 预估耗时，本次启动中已经执行过的{@code task}不会被覆盖。
+     */
+    /*package*/ static synchronized void loadHistoryIfNeeded() {
+        final ExecuteHistory history = AlphaConfig.getExecuteHistory();
+        if (sIsHistoryLoaded || history == null || !AlphaConfig.isProfileGuided()) {
+            return;
         }
 
-        mExecuteTimeMap.put(taskName, executeTime);
+        sIsHistoryLoaded = true;
+
+        //读文件不能阻塞启动，尤其是主线程
+        AlphaConfig.getExecutor(AlphaConfig.EXECUTOR_IO).execute(new Runnable() {
+            @Override
+            public void run() {
+                for (TaskHistory taskHistory : history.getTaskHistories().values()) {
+                    long costTime = TimeUnit.NANOSECONDS.toMicros(taskHistory.getSmoothedDuration());
+                    sEstimatedCostTimeMap.putIfAbsent(taskHistory.getTaskName(), costTime);
+                }
+            }
+        });
     }
 
     /**
@@ -55,6 +164,13 @@ class ExecuteMonitor {
         return mExecuteTimeMap;
     }
 
+    /**
+     * @return 已执行完的每个task的详细执行记录，按执行完成的先后顺序排列。
+     */
+    public synchronized List<TaskExecuteRecord> getExecuteRecords() {
+        return new ArrayList<TaskExecuteRecord>(mExecuteRecords);
+    }
+
     /**
      * 在{@code Project}开始执行时打点，记录开始时间。
      */
@@ -67,6 +183,7 @@ class ExecuteMonitor {
      */
     public void recordProjectFinish() {
         mProjectCostTime = System.currentTimeMillis() - mStartTime;
+        collectAll();
         AlphaLog.d("==ALPHA==", "tm start up cost time: %s ms", mProjectCostTime);
     }
 
@@ -78,6 +195,52 @@ class ExecuteMonitor {
         return mProjectCostTime;
     }
 
+    private synchronized void collectAll() {
+        //先标记再遍历，和Task中先写执行完成时间再检查这个标记配合，保证每个Task至少被一方汇总
+        mIsCollected = true;
+        mCollectedFlags = new boolean[mTasks.size()];
+
+        for (int i = 0, size = mTasks.size(); i < size; i++) {
+            collectTask(i);
+        }
+
+        Collections.sort(mExecuteRecords, FINISH_TIME_COMPARATOR);
+    }
+
+    private void collectTask(int index) {
+        Task task = mTasks.get(index);
+
+        //没有执行完成的，以及Project这样不直接执行的Task，执行完成时间为0
+        if (mCollectedFlags[index] || task.getFinishTime() == 0) {
+            return;
+        }
+
+        mCollectedFlags[index] = true;
+        TaskExecuteRecord record = task.createExecuteRecord();
+        long executeTime = TimeUnit.NANOSECONDS.toMillis(record.getFinishTime() - record.getDequeueTime());
+        mExecuteRecords.add(record);
+        record(record.getTaskName(), executeTime, record.getThreadName());
+        updateEstimatedCostTime(record.getTaskName(), TimeUnit.NANOSECONDS.toMicros(record.getRunTime()));
+    }
+
+    private void record(String taskName, long executeTime, String threadName) {
+        AlphaLog.d(AlphaLog.GLOBAL_TAG, "AlphaTask-->Startup task %s cost time: %s ms, in thread: %s", taskName, executeTime, threadName);
+        if (executeTime >= AlphaConfig.getWarmingTime()) {
+            toastToWarn("AlphaTask %s run too long, cost time: %s", taskName, executeTime);
+        }
+
+        mExecuteTimeMap.put(taskName, executeTime);
+    }
+
+    private static void updateEstimatedCostTime(String taskName, long costTime) {
+        Long lastCostTime = sEstimatedCostTimeMap.get(taskName);
+        if (lastCostTime != null && AlphaConfig.isProfileGuided()) {
+            costTime = TaskHistory.smooth(lastCostTime, costTime);
+        }
+
+        sEstimatedCostTimeMap.put(taskName, costTime);
+    }
+
     /**
      * 通过弹出{@code toast}来告警。
      *
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>{@link Project.Builder#create()}将{@code Task}之间的依赖关系编译成的执行图，创建后不可修改。</p>
+ * <p>图中每个{@code Task}对应一个从0开始的连续下标，其中{@link #START_INDEX}和{@link #FINISH_INDEX}是{@code Project}
+ * 的开始锚点和结束锚点。紧后{@code Task}以CSR的形式保存在两个int数组中，下标为{@code i}的{@code Task}的紧后{@code Task}
+ * 是{@code mSuccessors}中{@code [mSuccessorOffsets[i], mSuccessorOffsets[i + 1])}这一段，并且已经按照执行优先级
+ * 排好序。运行时只需要遍历数组，不再需要遍历对象图和重复排序。</p>
+ * <p>编译时会做一次O(V+E)的拓扑排序，存在循环依赖或者有{@code Task}永远不会被启动时直接抛出异常，而不是等到运行时
+ * 才发现启动流程卡住。拓扑序会保存下来供后续计算复用。</p>
+ */
+final class ExecutionGraph {
+    /**
+     * 开始锚点的下标
+     */
+    static final int START_INDEX = 0;
+
+    /**
+     * 结束锚点的下标
+     */
+    static final int FINISH_INDEX = 1;
+
+    private final Task[] mTasks;
+
+    /**
+     * 每个{@code Task}执行完成时需要通知的{@code Project}，嵌套的{@code Project}被展开后，其内部{@code Task}
+     * 仍然通知原来所在的{@code Project}
+     */
+    private final Project[] mOwners;
+
+    /**
+     * 每个{@code Task}执行完成时，以谁的名义通知{@link #mOwners}中的{@code Project}。嵌套{@code Project}的结束锚点
+     * 对应该{@code Project}本身，开始锚点和{@link #FINISH_INDEX}没有对应的{@code Task}，为{@code null}。
+     */
+    private final Task[] mFinishedTasks;
+    private final int[] mSuccessorOffsets;
+    private final int[] mSuccessors;
+    private final int[] mPredecessorOffsets;
+    private final int[] mPredecessors;
+
+    /**
+     * 拓扑序，排在前面的{@code Task}不依赖排在后面的{@code Task}
+     */
+    private final int[] mTopologicalOrder;
+
+    /**
+     * 每个{@code Task}的紧前{@code Task}数量
+     */
+    private final int[] mDependencyCounts;
+
+    /**
+     * 按名称查找{@code Task}在图中的下标，嵌套{@code Project}的名称对应它的结束锚点
+     */
+    private final Map<String, Integer> mNameIndexes;
+
+    private ExecutionGraph(Task[] tasks, Project[] owners, Task[] finishedTasks,
+                           int[] successorOffsets, int[] successors, int[] dependencyCounts) {
+        mTasks = tasks;
+        mOwners = owners;
+        mFinishedTasks = finishedTasks;
+        mSuccessorOffsets = successorOffsets;
+        mSuccessors = successors;
+        mDependencyCounts = dependencyCounts;
+
+        int count = tasks.length;
+        mPredecessorOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            mPredecessorOffsets[i + 1] = mPredecessorOffsets[i] + dependencyCounts[i];
+        }
+
+        mPredecessors = new int[successors.length];
+        int[] positions = new int[count];
+        System.arraycopy(mPredecessorOffsets, 0, positions, 0, count);
+        for (int i = 0; i < count; i++) {
+            for (int j = successorOffsets[i], end = successorOffsets[i + 1]; j < end; j++) {
+                mPredecessors[positions[successors[j]]++] = i;
+            }
+        }
+
+        mTopologicalOrder = new int[count];
+        mNameIndexes = new HashMap<String, Integer>();
+
+        for (int i = 0; i < count; i++) {
+            if (finishedTasks[i] != null && !mNameIndexes.containsKey(finishedTasks[i].mName)) {
+                mNameIndexes.put(finishedTasks[i].mName, i);
+            }
+        }
+    }
+
+    /**
+     * 复制{@code graph}的结构，只替换其中的{@code Task}，参见{@link #instantiate(Task[], Project[], Task[])}。
+     */
+    private ExecutionGraph(ExecutionGraph graph, Task[] tasks, Project[] owners, Task[] finishedTasks) {
+        mTasks = tasks;
+        mOwners = owners;
+        mFinishedTasks = finishedTasks;
+        mSuccessorOffsets = graph.mSuccessorOffsets;
+        mSuccessors = graph.mSuccessors;
+        mPredecessorOffsets = graph.mPredecessorOffsets;
+        mPredecessors = graph.mPredecessors;
+        mTopologicalOrder = graph.mTopologicalOrder;
+        mDependencyCounts = graph.mDependencyCounts;
+        mNameIndexes = graph.mNameIndexes;
+    }
+
+    /**
+     * 编译执行图。
+     *
+     * @param tasks         图中所有的{@code Task}，其在列表中的位置即为它在图中的下标
+     * @param owners        每个{@code Task}执行完成时需要通知的{@code Project}
+     * @param finishedTasks 每个{@code Task}执行完成时通知{@code Project}所用的{@code Task}，可以为{@code null}
+     * @param successorMap  每个{@code Task}的紧后{@code Task}，同一条边不能重复出现
+     * @param indexes       每个{@code Task}在图中的下标
+     * @param projectName   所属{@code Project}的名称，用于错误信息
+     * @return 编译完成的执行图
+     * @throws RuntimeException 存在循环依赖，或者有{@code Task}永远不会被启动
+     */
+    static ExecutionGraph compile(List<Task> tasks, List<Project> owners, List<Task> finishedTasks,
+                                  ListMultiMap<Task, Task> successorMap, Map<Task, Integer> indexes,
+                                  String projectName) {
+        int count = tasks.size();
+        int[] successorOffsets = new int[count + 1];
+
+        for (int i = 0; i < count; i++) {
+            List<Task> successorList = successorMap.get(tasks.get(i));
+            successorOffsets[i + 1] = successorOffsets[i] + (successorList == null ? 0 : successorList.size());
+        }
+
+        int[] successors = new int[successorOffsets[count]];
+        int[] dependencyCounts = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            List<Task> successorList = successorMap.get(tasks.get(i));
+            if (successorList == null) {
+                continue;
+            }
+
+            AlphaUtils.sort(successorList);
+
+            int position = successorOffsets[i];
+            for (Task successor : successorList) {
+                int index = indexes.get(successor);
+                successors[position++] = index;
+                dependencyCounts[index]++;
+            }
+        }
+
+        ExecutionGraph graph = new ExecutionGraph(tasks.toArray(new Task[count]),
+                owners.toArray(new Project[count]), finishedTasks.toArray(new Task[count]),
+                successorOffsets, successors, dependencyCounts);
+        graph.sortTopologically(projectName);
+        return graph;
+    }
+
+    /**
+     * 创建一个结构相同的执行图，图中的{@code Task}换成新的实例。编译的结果都是只读的，直接共享，不需要重新排序和校验。
+     *
+     * @param tasks         新的{@code Task}，下标和当前图中一一对应
+     * @param owners        每个{@code Task}执行完成时需要通知的{@code Project}
+     * @param finishedTasks 每个{@code Task}执行完成时通知{@code Project}所用的{@code Task}，可以为{@code null}
+     * @return 新的执行图
+     */
+    ExecutionGraph instantiate(Task[] tasks, Project[] owners, Task[] finishedTasks) {
+        return new ExecutionGraph(this, tasks, owners, finishedTasks);
+    }
+
+    /**
+     * @return 图中{@code Task}的数量，包括开始和结束锚点。
+     */
+    int getTaskCount() {
+        return mTasks.length;
+    }
+
+    Task getTask(int index) {
+        return mTasks[index];
+    }
+
+    /**
+     * @return 名称为{@code name}的{@code Task}在图中的下标，不存在时返回-1。
+     */
+    int indexOf(String name) {
+        Integer index = mNameIndexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return 图中所有{@code Task}的名称，包括嵌套{@code Project}的名称
+     */
+    Set<String> getTaskNames() {
+        return Collections.unmodifiableSet(mNameIndexes.keySet());
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}执行完成时需要通知的{@code Project}
+     */
+    Project getOwner(int index) {
+        return mOwners[index];
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}执行完成时，通知{@link #getOwner(int)}所用的{@code Task}，
+     * 为{@code null}时不需要通知。
+     */
+    Task getFinishedTask(int index) {
+        return mFinishedTasks[index];
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}的紧后{@code Task}在{@link #getSuccessor(int)}中的起始位置
+     */
+    int getSuccessorStart(int index) {
+        return mSuccessorOffsets[index];
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}的紧后{@code Task}在{@link #getSuccessor(int)}中的结束位置（不包含）
+     */
+    int getSuccessorEnd(int index) {
+        return mSuccessorOffsets[index + 1];
+    }
+
+    /**
+     * @return {@link #getSuccessorStart(int)}和{@link #getSuccessorEnd(int)}之间某个位置上的紧后{@code Task}的下标
+     */
+    int getSuccessor(int position) {
+        return mSuccessors[position];
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}的紧前{@code Task}在{@link #getPredecessor(int)}中的起始位置
+     */
+    int getPredecessorStart(int index) {
+        return mPredecessorOffsets[index];
+    }
+
+    /**
+     * @return 下标为{@code index}的{@code Task}的紧前{@code Task}在{@link #getPredecessor(int)}中的结束位置（不包含）
+     */
+    int getPredecessorEnd(int index) {
+        return mPredecessorOffsets[index + 1];
+    }
+
+    /**
+     * @return {@link #getPredecessorStart(int)}和{@link #getPredecessorEnd(int)}之间某个位置上的紧前{@code Task}的下标
+     */
+    int getPredecessor(int position) {
+        return mPredecessors[position];
+    }
+
+    /**
+     * @return 拓扑序中第{@code position}个{@code Task}的下标，第0个总是开始锚点。
+     */
+    int getTopologicalOrder(int position) {
+        return mTopologicalOrder[position];
+    }
+
+    /**
+     * @return 一次执行所需要的依赖计数器，初始值为每个{@code Task}的紧前{@code Task}数量。
+     */
+    AtomicIntegerArray createDependencyCounter() {
+        return new AtomicIntegerArray(mDependencyCounts);
+    }
+
+    /**
+     * 计算每个{@code Task}到结束锚点的最长路径的预估耗时，用于关键路径调度。
+     */
+    void updateCriticalPath() {
+        int count = mTasks.length;
+        long[] pathTimes = new long[count];
+
+        //按照拓扑序倒序计算，计算某个Task时它所有的紧后Task都已经计算完成
+        for (int i = count - 1; i >= 0; i--) {
+            int index = mTopologicalOrder[i];
+            long downstreamTime = 0;
+
+            for (int j = mSuccessorOffsets[index], end = mSuccessorOffsets[index + 1]; j < end; j++) {
+                downstreamTime = Math.max(downstreamTime, pathTimes[mSuccessors[j]]);
+            }
+
+            pathTimes[index] = mTasks[index].updateCriticalPathTime(downstreamTime);
+        }
+    }
+
+    /**
+     * <p>找出可以由其他依赖推导出来的冗余依赖。例如同时声明了C在A、B之后，B在A之后，那么A→C就是冗余的，去掉它
+     * 不会改变执行顺序，但可以少一次紧后{@code Task}的通知。</p>
+     * <p>按照拓扑序倒序计算每个{@code Task}可以到达的{@code Task}集合（用bitmap表示），对于某个{@code Task}的
+     * 紧后{@code Task}，按照拓扑序依次处理，如果它已经可以从前面处理过的紧后{@code Task}到达，那么到它的边就是冗余的。
+     * 时间复杂度O(V*E/64)，空间复杂度O(V*V/64)，只在创建{@code Project}时执行一次。</p>
+     *
+     * @return 冗余的依赖，key为紧前{@code Task}，value为紧后{@code Task}，没有冗余依赖时返回{@code null}。
+     */
+    ListMultiMap<Task, Task> findTransitiveEdges() {
+        int count = mTasks.length;
+        int words = (count + 63) >>> 6;
+        long[][] descendants = new long[count][];
+        int[] ranks = new int[count];
+        int maxDegree = 0;
+
+        for (int i = 0; i < count; i++) {
+            ranks[mTopologicalOrder[i]] = i;
+            maxDegree = Math.max(maxDegree, mSuccessorOffsets[i + 1] - mSuccessorOffsets[i]);
+        }
+
+        ListMultiMap<Task, Task> result = null;
+        int[] successors = new int[maxDegree];
+
+        for (int i = count - 1; i >= 0; i--) {
+            int index = mTopologicalOrder[i];
+            int start = mSuccessorOffsets[index];
+            int degree = mSuccessorOffsets[index + 1] - start;
+            long[] reachable = new long[words];
+
+            //紧后Task按照拓扑序插入排序，度数一般都很小
+            for (int j = 0; j < degree; j++) {
+                int successor = mSuccessors[start + j];
+                int k = j;
+                while (k > 0 && ranks[successors[k - 1]] > ranks[successor]) {
+                    successors[k] = successors[k - 1];
+                    k--;
+                }
+                successors[k] = successor;
+            }
+
+            for (int j = 0; j < degree; j++) {
+                int successor = successors[j];
+                long mask = 1L << successor;
+
+                if ((reachable[successor >>> 6] & mask) != 0) {
+                    if (result == null) {
+                        result = new ListMultiMap<Task, Task>();
+                    }
+
+                    result.put(mTasks[index], mTasks[successor]);
+                    continue;
+                }
+
+                long[] successorDescendants = descendants[successor];
+                for (int k = 0; k < words; k++) {
+                    reachable[k] |= successorDescendants[k];
+                }
+                reachable[successor >>> 6] |= mask;
+            }
+
+            descendants[index] = reachable;
+        }
+
+        return result;
+    }
+
+    /**
+     * 用Kahn算法计算拓扑序，同时检查图的合法性：
+     * <li>只有开始锚点可以没有紧前{@code Task}，否则该{@code Task}永远不会被启动；</li>
+     * <li>不能有循环依赖，否则环上的{@code Task}永远不会被启动。</li>
+     */
+    /*package*/ void sortTopologically(String projectName) {
+        int count = mTasks.length;
+        int[] pendingCounts = new int[count];
+        System.arraycopy(mDependencyCounts, 0, pendingCounts, 0, count);
+
+        //mTopologicalOrder同时作为Kahn算法的队列使用
+        int head = 0;
+        int tail = 0;
+        mTopologicalOrder[tail++] = START_INDEX;
+        List<Task> unreachableTasks = null;
+
+        for (int i = 0; i < count; i++) {
+            if (i != START_INDEX && pendingCounts[i] == 0) {
+                if (unreachableTasks == null) {
+                    unreachableTasks = new ArrayList<Task>();
+                }
+
+                unreachableTasks.add(mTasks[i]);
+                mTopologicalOrder[tail++] = i;
+            }
+        }
+
+        while (head < tail) {
+            int index = mTopologicalOrder[head++];
+
+            for (int i = mSuccessorOffsets[index], end = mSuccessorOffsets[index + 1]; i < end; i++) {
+                int successor = mSuccessors[i];
+
+                if (--pendingCounts[successor] == 0) {
+                    mTopologicalOrder[tail++] = successor;
+                }
+            }
+        }
+
+        if (tail < count) {
+            throw new RuntimeException("Circular dependency in project " + projectName + ": "
+                    + findCycle(pendingCounts));
+        }
+
+        if (unreachableTasks != null) {
+            throw new RuntimeException("Task " + getNames(unreachableTasks) + " in project " + projectName
+                    + " will never start, make sure it has been added to the project.");
+        }
+    }
+
+    /**
+     * 找出一个环。拓扑排序后剩下的{@code Task}都至少有一个紧前{@code Task}也剩下了，所以从任意一个剩下的{@code Task}
+     * 出发一直沿着剩下的紧前{@code Task}往回走，必然会走到一个已经走过的{@code Task}，中间经过的就是一个环。
+     *
+     * @param pendingCounts 拓扑排序后每个{@code Task}剩余的紧前{@code Task}数量
+     * @return 环的路径，例如"A -> B -> C -> A"
+     */
+    private String findCycle(int[] pendingCounts) {
+        int count = mTasks.length;
+        int[] stepOf = new int[count];
+        int[] path = new int[count + 1];
+        int step = 0;
+
+        int index = 0;
+        while (pendingCounts[index] == 0) {
+            index++;
+        }
+
+        while (stepOf[index] == 0) {
+            path[step++] = index;
+            stepOf[index] = step;
+
+            for (int i = mPredecessorOffsets[index], end = mPredecessorOffsets[index + 1]; i < end; i++) {
+                if (pendingCounts[mPredecessors[i]] > 0) {
+                    index = mPredecessors[i];
+                    break;
+                }
+            }
+        }
+
+        //path中从stepOf[index] - 1到最后是沿着紧前方向走的环，倒过来就是依赖方向
+        StringBuilder builder = new StringBuilder(mTasks[index].mName);
+        for (int i = step - 1; i >= stepOf[index] - 1; i--) {
+            builder.append(" -> ").append(mTasks[path[i]].mName);
+        }
+
+        return builder.toString();
+    }
+
+    private static String getNames(List<Task> tasks) {
+        List<String> names = new ArrayList<String>(tasks.size());
+        for (Task task : tasks) {
+            names.add(task.mName);
+        }
+
+        return names.toString();
+    }
+}
@@ -23,6 +23,8 @@ package com.alibaba.android.alpha;
 public interface ITaskCreator {
     /**
      * 根据Task名称，创建Task实例。这个接口需要使用者自己实现。创建后的实例会被缓存起来。
+     * <strong>注意：</strong>延迟创建Task时（参见{@link Project.Builder#withTaskCreator(ITaskCreator, boolean)}），
+     * 这个方法在执行线程中调用，可能被多个线程同时调用，实现需要是线程安全的。
      * @param taskName Task名称
      * @return  Task实例
      */
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>执行空闲{@code task}的{@code Executor}，参见{@link Project.Builder#addIdle(Task)}。</p>
+ * <p>就绪的空闲{@code task}先按照执行优先级放入队列，等到主线程的消息队列空闲时才取出执行，每次空闲最多执行
+ * {@link AlphaConfig#setIdleTaskCountPerWindow(int)}个。在UI线程执行的{@code task}直接在
+ * {@link MessageQueue.IdleHandler}中执行，其余的交给线程池。执行之后队列中还有{@code task}时，发送一个空消息，
+ * 等主线程处理完其他消息再次空闲时继续执行。</p>
+ */
+/*package*/ final class IdleTaskExecutor implements Executor, MessageQueue.IdleHandler {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 等待执行的{@code task}，由{@code this}保护
+     */
+    private final PriorityQueue<Runnable> mQueue = new PriorityQueue<Runnable>(11, AlphaUtils.getExecutePriorityComparator());
+
+    /**
+     * 是否已经注册了{@code IdleHandler}，由{@code this}保护
+     */
+    private boolean mIsRegistered;
+
+    private final Runnable mRegisterRunnable = new Runnable() {
+        @Override
+        public void run() {
+            //IdleHandler只能注册到当前线程的消息队列中
+            Looper.myQueue().addIdleHandler(IdleTaskExecutor.this);
+        }
+    };
+
+    private final Runnable mWakeUpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            //do nothing，只是让主线程的消息队列再空闲一次
+        }
+    };
+
+    @Override
+    public void execute(Runnable runnable) {
+        synchronized (this) {
+            mQueue.add(runnable);
+
+            if (mIsRegistered) {
+                return;
+            }
+
+            mIsRegistered = true;
+        }
+
+        mHandler.post(mRegisterRunnable);
+    }
+
+    /**
+     * 将尚未执行的{@code runnable}移出队列。
+     *
+     * @return {@code true}成功移出，{@code false}不在队列中，可能已经开始执行。
+     */
+    /*package*/ synchronized boolean remove(Runnable runnable) {
+        return mQueue.remove(runnable);
+    }
+
+    @Override
+    public boolean queueIdle() {
+        for (int i = 0, count = AlphaConfig.getIdleTaskCountPerWindow(); i < count; i++) {
+            Runnable runnable;
+
+            synchronized (this) {
+                runnable = mQueue.poll();
+
+                if (runnable == null) {
+                    mIsRegistered = false;
+                    return false;
+                }
+            }
+
+            Task task = ((Task.InternalRunnable) runnable).getTask();
+            if (task.isInUiThread()) {
+                runnable.run();
+            } else {
+                task.getExecutorService().execute(runnable);
+            }
+        }
+
+        synchronized (this) {
+            if (mQueue.isEmpty()) {
+                mIsRegistered = false;
+                return false;
+            }
+        }
+
+        mHandler.post(mWakeUpRunnable);
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+/**
+ * <p>延迟创建的{@code Task}。图中只保存名称以及创建方式（{@link ITaskCreator}或者类名），真正的{@code Task}实例在
+ * 派发后、执行前才在执行线程中创建，执行完成后立即释放。这样组装执行图时不需要加载和构造所有{@code Task}，
+ * 构造的开销也分摊到了各个执行线程中。</p>
+ * <strong>注意：</strong>执行优先级、线程优先级、执行线程等配置以图中的设置为准，真正的{@code Task}在构造函数中设置的
+ * 执行优先级和监听不会生效。真正的{@code Task}不能在UI线程执行，也不能是{@link CallbackTask}或者{@link Project}，
+ * 否则该{@code Task}按照所在{@code Project}的失败策略执行失败。这些只有创建之后才能知道，组装时无法检查。
+ * 多个{@code LazyTask}可能在不同的执行线程中同时调用同一个{@link ITaskCreator#createTask(String)}。
+ */
+/*package*/ final class LazyTask extends Task {
+    private final ITaskCreator mTaskCreator;
+    private final String mClassName;
+
+    /**
+     * @param name    {@code Task}名称，执行时通过{@code creator}按这个名称创建{@code Task}
+     * @param creator 按名称创建{@code Task}实例
+     */
+    public LazyTask(String name, ITaskCreator creator) {
+        super(name);
+        mTaskCreator = creator;
+        mClassName = null;
+    }
+
+    /**
+     * @param name      {@code Task}名称
+     * @param className {@code Task}的类名，执行时通过反射创建
+     */
+    public LazyTask(String name, String className) {
+        super(name);
+        mTaskCreator = null;
+        mClassName = className;
+    }
+
+    @Override
+    public void run() {
+        //只在这里持有真正的Task，执行完成后即可回收
+        Task task = createTask();
+        if (task == null) {
+            return;
+        }
+
+        //构造函数中指定的线程优先级只有创建后才知道，execute()结束时会恢复原来的优先级
+        int threadPriority = task.getThreadPriority();
+        if (threadPriority != getThreadPriority()) {
+            ThreadPriority.set(threadPriority);
+        }
+
+        task.run();
+    }
+
+    /**
+     * @return 新的{@code LazyTask}，创建方式相同，用于{@link ProjectTemplate}。
+     */
+    /*package*/ LazyTask newInstance() {
+        return mTaskCreator != null ? new LazyTask(mName, mTaskCreator) : new LazyTask(mName, mClassName);
+    }
+
+    /**
+     * @return 真正的{@code Task}，不能延迟创建时按照失败策略结束当前{@code Task}并返回{@code null}，
+     * 不抛到执行线程中。
+     */
+    private Task createTask() {
+        Task task = mTaskCreator != null ? mTaskCreator.createTask(mName) : ConfigParser.newTask(mClassName);
+        String reason = null;
+
+        if (task == null) {
+            reason = "Create task fail, there is no task corresponding to the task name " + mName
+                    + ". Make sure you have create a task instance in TaskCreator.";
+        } else if (task instanceof Project) {
+            //Project在组装执行图时就需要展开，执行时才创建已经来不及了
+            reason = "Task " + mName + " is a Project, it can not be created lazily.";
+        } else if (task.isInUiThread() && !isInUiThread()) {
+            reason = "Task " + mName + " runs in UI thread, it can not be created lazily.";
+        } else if (task.isCompletedByCallback()) {
+            reason = "Task " + mName + " is a CallbackTask, it can not be created lazily.";
+        }
+
+        if (reason != null) {
+            fail(new IllegalArgumentException(reason), false);
+            return null;
+        }
+
+        task.setName(mName);
+        return task;
+    }
+}
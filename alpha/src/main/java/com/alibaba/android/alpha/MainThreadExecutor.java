@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>在UI线程中执行{@code task}的{@code Executor}。</p>
+ * <p>{@code task}不再逐个post到主线程，而是先放入按照执行优先级排序的队列中，队列中有{@code task}时只有一个
+ * 处理消息在主线程的消息队列中。同一时间就绪的多个{@code task}会在同一个消息中依次执行，每个消息执行的总时长
+ * 不超过{@link AlphaConfig#setMainThreadDrainBudget(long)}，剩下的{@code task}放到下一个消息中执行，
+ * 不会长时间占用主线程导致掉帧。</p>
+ */
+/*package*/ final class MainThreadExecutor implements Executor {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 等待执行的{@code task}，由{@code this}保护
+     */
+    private final PriorityQueue<Runnable> mQueue = new PriorityQueue<Runnable>(11, AlphaUtils.getExecutePriorityComparator());
+
+    /**
+     * 主线程的消息队列中是否已经有处理消息，由{@code this}保护
+     */
+    private boolean mIsDrainScheduled;
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    @Override
+    public void execute(Runnable runnable) {
+        synchronized (this) {
+            mQueue.add(runnable);
+
+            if (mIsDrainScheduled) {
+                return;
+            }
+
+            mIsDrainScheduled = true;
+        }
+
+        scheduleDrain();
+    }
+
+    /**
+     * 将尚未执行的{@code runnable}移出队列。
+     *
+     * @return {@code true}成功移出，{@code false}不在队列中，可能已经开始执行。
+     */
+    /*package*/ synchronized boolean remove(Runnable runnable) {
+        return mQueue.remove(runnable);
+    }
+
+    private void scheduleDrain() {
+        Message message = Message.obtain(mHandler, mDrainRunnable);
+
+        if (AlphaConfig.isMainThreadAsyncMessage() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
+            //异步消息不受同步屏障的影响，不需要等到下一帧绘制完成才能执行
+            message.setAsynchronous(true);
+        }
+
+        mHandler.sendMessage(message);
+    }
+
+    private void drain() {
+        long budget = AlphaConfig.getMainThreadDrainBudget();
+        long deadline = SystemClock.uptimeMillis() + budget;
+
+        while (true) {
+            Runnable runnable;
+
+            synchronized (this) {
+                runnable = mQueue.poll();
+
+                if (runnable == null) {
+                    mIsDrainScheduled = false;
+                    return;
+                }
+            }
+
+            runnable.run();
+
+            if (budget > 0 && SystemClock.uptimeMillis() >= deadline) {
+                break;
+            }
+        }
+
+        synchronized (this) {
+            if (mQueue.isEmpty()) {
+                mIsDrainScheduled = false;
+                return;
+            }
+        }
+
+        //超出了时间预算，剩下的task放到下一个消息中执行，让出主线程处理输入和绘制
+        scheduleDrain();
+    }
+}
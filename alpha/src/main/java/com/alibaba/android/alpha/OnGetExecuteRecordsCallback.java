@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.List;
+
+/**
+ * <p>获取{@code Project}中每个{@code Task}详细执行记录的回调，和{@link OnGetMonitorRecordCallback}一起在
+ * {@code Project}执行完成时回调。</p>
+ */
+public interface OnGetExecuteRecordsCallback {
+
+    /**
+     * 获取{@code task}的执行记录。
+     * @param records 执行完成的{@code task}的执行记录，按执行完成的先后顺序排列，时间单位是纳秒。
+     */
+    public void onGetExecuteRecords(List<TaskExecuteRecord> records);
+}
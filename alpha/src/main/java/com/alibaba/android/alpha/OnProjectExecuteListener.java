@@ -34,7 +34,8 @@ public interface OnProjectExecuteListener {
 
 
     /**
-     * 当{@code Project}其中一个{@code Task}执行结束时，调用该函数。<br>
+     * 当{@code Project}其中一个{@code Task}执行结束时，调用该函数，被取消或者因为紧前{@code Task}失败而被跳过的
+     * {@code Task}不会回调。<br>
      * <strong>注意：</strong>该回调函数在{@code Task}所在线程中回调，注意线程安全。
      *
      * @param taskName 当前结束的{@code Task}名称
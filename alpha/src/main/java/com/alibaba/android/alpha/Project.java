@@ -16,9 +16,15 @@
 
 package com.alibaba.android.alpha;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * <p>多个前后依赖的{@code task}组成的有序集合。一个{@code project}本身是一个{@code task},可以像普通{@code task}
@@ -27,12 +33,59 @@ import java.util.List;
  * Created by zhangshuliang.zsl on 15/9/30.
  */
 public class Project extends Task implements OnProjectExecuteListener {
+
+    /**
+     * 失败策略，先按照{@link #FAILURE_POLICY_FAIL_PROJECT}取消整个{@code Project}，{@code Project}照常结束，
+     * 然后再把{@code Task}抛出的异常抛到执行它的线程中。这是默认的策略。超时按照{@link #FAILURE_POLICY_FAIL_PROJECT}处理。
+     */
+    public static final int FAILURE_POLICY_THROW = 0;
+
+    /**
+     * 失败策略，忽略失败，紧后{@code Task}照常执行。
+     */
+    public static final int FAILURE_POLICY_CONTINUE = 1;
+
+    /**
+     * 失败策略，跳过所有直接或者间接依赖失败{@code Task}的{@code Task}，其余的照常执行。
+     */
+    public static final int FAILURE_POLICY_SKIP_DOWNSTREAM = 2;
+
+    /**
+     * 失败策略，取消整个{@code Project}，参见{@link #cancel()}。
+     */
+    public static final int FAILURE_POLICY_FAIL_PROJECT = 3;
+
     private Task mStartTask;
     private AnchorTask mFinishTask;
     private List<OnProjectExecuteListener> mExecuteListeners = new ArrayList<OnProjectExecuteListener>();
     private static final String DEFAULT_NAME = "AlphaProject";
     private ExecuteMonitor mProjectExecuteMonitor;
     private OnGetMonitorRecordCallback mOnGetMonitorRecordCallback;
+    private OnGetExecuteRecordsCallback mOnGetExecuteRecordsCallback;
+
+    /**
+     * 执行完成后导出trace的文件，{@code null}表示不导出
+     */
+    private File mTraceFile;
+    private ExecutionGraph mGraph;
+
+    /**
+     * 本次执行中每个{@code Task}尚未执行完成的紧前{@code Task}数量
+     */
+    private AtomicIntegerArray mDependencyCounter;
+
+    /**
+     * 本次执行中每个{@code Task}是否因为紧前{@code Task}失败而需要跳过，只在{@link #FAILURE_POLICY_SKIP_DOWNSTREAM}
+     * 时创建
+     */
+    private AtomicIntegerArray mSkipFlags;
+
+    private int mFailurePolicy = FAILURE_POLICY_THROW;
+
+    /**
+     * 是否已经被取消，由{@code this}保护
+     */
+    private volatile boolean mIsCancelled;
 
     public Project() {
         super(DEFAULT_NAME);
@@ -49,17 +102,20 @@ public class Project extends Task implements OnProjectExecuteListener {
 
     @Override
     public void start() {
-        mStartTask.start();
-    }
+        if (AlphaConfig.isProfileGuided()) {
+            //预估耗时在读取耗时记录之后、以及同一次启动的各个Project之间都会变化，所以在开始执行时才计算路径
+            mGraph.updateCriticalPath();
+        }
 
-    @Override
-    synchronized void addSuccessor(Task task) {
-        mFinishTask.addSuccessor(task);
+        //开始锚点只负责回调onProjectStart()，直接在当前线程执行
+        mStartTask.runInline(false);
     }
 
     @Override
     public int getCurrentState() {
-        if (mStartTask.getCurrentState() == STATE_IDLE) {
+        if (mIsCancelled) {
+            return STATE_CANCELLED;
+        } else if (mStartTask.getCurrentState() == STATE_IDLE) {
             return STATE_IDLE;
         } else if (mFinishTask.getCurrentState() == STATE_FINISHED) {
             return STATE_FINISHED;
@@ -68,6 +124,11 @@ public class Project extends Task implements OnProjectExecuteListener {
         }
     }
 
+    @Override
+    CountDownLatch getFinishLatch() {
+        return mFinishTask.getFinishLatch();
+    }
+
     @Override
     public boolean isRunning() {
         return getCurrentState() == STATE_RUNNING;
@@ -78,6 +139,23 @@ public class Project extends Task implements OnProjectExecuteListener {
         return getCurrentState() == STATE_FINISHED;
     }
 
+    @Override
+    public boolean isCancelled() {
+        return mIsCancelled;
+    }
+
+    /**
+     * <p>取消该{@code Project}。尚未开始执行的{@code Task}不再执行，正在执行的{@code Task}所在的线程会被中断，不再
+     * 等待它们执行结束，被取消的{@code Task}处于{@link #STATE_CANCELLED}状态。随后{@code Project}立即结束，
+     * 已经开始执行的{@code Project}会回调{@link OnProjectExecuteListener#onProjectFinish()}。</p>
+     * <strong>注意：</strong>嵌套的{@code Project}随所在的{@code Project}一起取消，需要在最外层的{@code Project}上调用。
+     */
+    public void cancel() {
+        if (setCancelled()) {
+            cancelTasks();
+        }
+    }
+
     @Override
     public void addOnTaskFinishListener(final OnTaskFinishListener listener) {
         mFinishTask.addOnTaskFinishListener(new OnTaskFinishListener() {
@@ -102,9 +180,10 @@ public class Project extends Task implements OnProjectExecuteListener {
 
     @Override
     public void onTaskFinish(String taskName) {
+        //每个Task执行完成都会回调，按下标遍历，不创建迭代器
         if (mExecuteListeners != null && !mExecuteListeners.isEmpty()) {
-            for (OnProjectExecuteListener listener : mExecuteListeners) {
-                listener.onTaskFinish(taskName);
+            for (int i = 0, size = mExecuteListeners.size(); i < size; i++) {
+                mExecuteListeners.get(i).onTaskFinish(taskName);
             }
         }
     }
@@ -125,6 +204,20 @@ public class Project extends Task implements OnProjectExecuteListener {
             mOnGetMonitorRecordCallback.onGetProjectExecuteTime(mProjectExecuteMonitor.getProjectCostTime());
             mOnGetMonitorRecordCallback.onGetTaskExecuteRecord(mProjectExecuteMonitor.getExecuteTimeMap());
         }
+
+        if (mOnGetExecuteRecordsCallback != null) {
+            mOnGetExecuteRecordsCallback.onGetExecuteRecords(mProjectExecuteMonitor.getExecuteRecords());
+        }
+
+        ExecuteHistory history = AlphaConfig.getExecuteHistory();
+        if (history != null) {
+            history.append(mProjectExecuteMonitor.getExecuteRecords());
+        }
+
+        if (mTraceFile != null && mGraph != null) {
+            //在这里复制执行记录，生成和写文件都在IO线程中进行
+            AlphaConfig.getExecutor(AlphaConfig.EXECUTOR_IO).execute(new TraceWriter(this, mGraph, mTraceFile));
+        }
     }
 
 
@@ -146,6 +239,27 @@ public class Project extends Task implements OnProjectExecuteListener {
         mOnGetMonitorRecordCallback = callback;
     }
 
+    /**
+     * 设置获取{@code Project}中每个{@code Task}详细执行记录的回调接口，包括排队等待时间、执行时间、执行线程和
+     * 线程CPU时间，时间精确到纳秒。
+     *
+     * @param callback 获取详细执行记录的回调接口。
+     */
+    public void setOnGetExecuteRecordsCallback(OnGetExecuteRecordsCallback callback) {
+        mOnGetExecuteRecordsCallback = callback;
+    }
+
+    /**
+     * <p>设置执行完成后导出trace的文件，格式是Chrome Trace Event JSON，可以直接用Perfetto或者chrome://tracing打开，
+     * 查看每个线程的执行情况、{@code Task}之间的依赖以及嵌套{@code Project}的区间。</p>
+     * <p>文件在{@code Project}执行完成后由后台线程写入，不影响启动。</p>
+     *
+     * @param file 导出的文件，{@code null}表示不导出。
+     */
+    public void setTraceFile(File file) {
+        mTraceFile = file;
+    }
+
     void setStartTask(Task startTask) {
         mStartTask = startTask;
     }
@@ -158,6 +272,294 @@ public class Project extends Task implements OnProjectExecuteListener {
         mProjectExecuteMonitor = monitor;
     }
 
+    /*package*/ int getFailurePolicy() {
+        return mFailurePolicy;
+    }
+
+    /**
+     * @return {@code true}这次调用将{@code Project}标记为取消，{@code false}之前已经被取消了。
+     */
+    /*package*/ synchronized boolean setCancelled() {
+        if (mIsCancelled) {
+            return false;
+        }
+
+        mIsCancelled = true;
+        return true;
+    }
+
+    /**
+     * 按照拓扑序取消所有尚未结束的{@code Task}，最后执行结束锚点。
+     */
+    /*package*/ void cancelTasks() {
+        for (int i = 0, count = mGraph.getTaskCount(); i < count; i++) {
+            mGraph.getTask(mGraph.getTopologicalOrder(i)).cancel();
+        }
+    }
+
+    /**
+     * @return 图中下标为{@code index}的{@code Task}是否因为紧前{@code Task}失败而需要跳过。
+     */
+    /*package*/ boolean shouldSkip(int index) {
+        return mSkipFlags != null && mSkipFlags.get(index) != 0;
+    }
+
+    void setGraph(ExecutionGraph graph) {
+        mGraph = graph;
+        mDependencyCounter = graph.createDependencyCounter();
+        mSkipFlags = mFailurePolicy == FAILURE_POLICY_SKIP_DOWNSTREAM ? new AtomicIntegerArray(graph.getTaskCount()) : null;
+
+        for (int i = 0, count = graph.getTaskCount(); i < count; i++) {
+            graph.getTask(i).setProject(this, i);
+        }
+    }
+
+    ExecutionGraph getGraph() {
+        return mGraph;
+    }
+
+    /**
+     * @return 图中名称为{@code taskName}的{@code Task}，嵌套{@code Project}的名称对应它的结束锚点；不存在时返回{@code null}。
+     */
+    /*package*/ Task getTask(String taskName) {
+        int index = mGraph.indexOf(taskName);
+        return index < 0 ? null : mGraph.getTask(index);
+    }
+
+    /**
+     * @return 图中所有的空闲{@code Task}，它们可能在结束锚点之后才执行
+     */
+    /*package*/ List<Task> getIdleTasks() {
+        List<Task> idleTasks = new ArrayList<Task>();
+
+        for (int i = 0, count = mGraph.getTaskCount(); i < count; i++) {
+            Task task = mGraph.getTask(i);
+            if (task.isIdle()) {
+                idleTasks.add(task);
+            }
+        }
+
+        return idleTasks;
+    }
+
+    /**
+     * 将名称为{@code taskName}的{@code Task}以及它所有尚未完成的祖先{@code Task}提前执行。
+     *
+     * @param taskName 需要提前的{@code Task}的名称，也可以是嵌套{@code Project}的名称
+     * @return 可以等待该{@code Task}执行完成的{@code TaskHandle}
+     */
+    /*package*/ TaskHandle require(String taskName) {
+        int index = mGraph.indexOf(taskName);
+        if (index < 0) {
+            throw new RuntimeException("No such task: " + taskName);
+        }
+
+        int[] queue = new int[mGraph.getTaskCount()];
+        boolean[] visited = new boolean[queue.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = index;
+        visited[index] = true;
+
+        while (head < tail) {
+            int current = queue[head++];
+            Task task = mGraph.getTask(current);
+
+            //已经完成或者已经被提前过的Task，它的祖先也都已经完成或者被提前过
+            if (task.isFinished() || !task.boost()) {
+                continue;
+            }
+
+            for (int i = mGraph.getPredecessorStart(current), end = mGraph.getPredecessorEnd(current); i < end; i++) {
+                int predecessor = mGraph.getPredecessor(i);
+                if (!visited[predecessor]) {
+                    visited[predecessor] = true;
+                    queue[tail++] = predecessor;
+                }
+            }
+        }
+
+        return new TaskHandle(taskName, mGraph.getTask(index).getFinishLatch());
+    }
+
+    /**
+     * 以当前{@code Project}为模板创建一个新的{@code Project}，参见{@link ProjectTemplate#newProject()}。
+     * 执行图的结构直接共享，图中的{@code Task}由{@code creator}重新创建并复制原来的配置，锚点和嵌套的{@code Project}
+     * 同样重新创建，每次执行的状态互不影响。
+     *
+     * @param creator 按名称创建{@code Task}实例
+     * @return 新的{@code Project}
+     */
+    /*package*/ Project instantiate(ITaskCreator creator) {
+        ExecutionGraph graph = mGraph;
+        int count = graph.getTaskCount();
+        Task[] tasks = new Task[count];
+        Project[] owners = new Project[count];
+        Task[] finishedTasks = new Task[count];
+
+        //模板中的Project、锚点到新实例的映射
+        Map<Task, Task> copies = new IdentityHashMap<Task, Task>();
+
+        for (int i = 0; i < count; i++) {
+            Task prototype = graph.getTask(i);
+            Project owner = copyProject(graph.getOwner(i), copies);
+            Task task;
+
+            if (prototype instanceof AnchorTask) {
+                AnchorTask anchor = (AnchorTask) prototype;
+                task = anchor.newInstance(copyProject(anchor.mExecuteListener, copies));
+                copies.put(prototype, task);
+            } else if (prototype instanceof LazyTask) {
+                task = ((LazyTask) prototype).newInstance();
+                task.copyConfig(prototype);
+                task.setExecuteMonitor(owner.mProjectExecuteMonitor);
+            } else {
+                task = creator.createTask(prototype.mName);
+                if (task == null) {
+                    throw new IllegalArgumentException("Create task fail, there is no task corresponding to the task name "
+                            + prototype.mName + ". Make sure you have create a task instance in TaskCreator.");
+                }
+
+                task.setName(prototype.mName);
+                task.copyConfig(prototype);
+                task.setExecuteMonitor(owner.mProjectExecuteMonitor);
+            }
+
+            Task finishedTask = graph.getFinishedTask(i);
+            tasks[i] = task;
+            owners[i] = owner;
+            finishedTasks[i] = finishedTask == prototype ? task
+                    : finishedTask instanceof Project ? copyProject((Project) finishedTask, copies) : null;
+        }
+
+        //模板中Project的监控到新实例的映射，嵌套的Project需要登记到外层Project新的监控中
+        Map<ExecuteMonitor, ExecuteMonitor> monitors = new IdentityHashMap<ExecuteMonitor, ExecuteMonitor>();
+        for (Map.Entry<Task, Task> entry : copies.entrySet()) {
+            if (entry.getKey() instanceof Project) {
+                monitors.put(((Project) entry.getKey()).mProjectExecuteMonitor,
+                        ((Project) entry.getValue()).mProjectExecuteMonitor);
+            }
+        }
+
+        for (Map.Entry<Task, Task> entry : copies.entrySet()) {
+            if (entry.getKey() instanceof Project) {
+                Project prototype = (Project) entry.getKey();
+                Project project = (Project) entry.getValue();
+                project.setStartTask(copies.get(prototype.mStartTask));
+                project.setFinishTask((AnchorTask) copies.get(prototype.mFinishTask));
+                project.setExecuteMonitor(monitors.get(prototype.getExecuteMonitor()));
+            } else {
+                AnchorTask prototype = (AnchorTask) entry.getKey();
+                if (prototype.mStartAnchor != null) {
+                    ((AnchorTask) entry.getValue()).setStartAnchor((AnchorTask) copies.get(prototype.mStartAnchor));
+                }
+            }
+        }
+
+        Project project = (Project) copies.get(this);
+        project.setGraph(graph.instantiate(tasks, owners, finishedTasks));
+
+        if (AlphaConfig.isCriticalPathFirst()) {
+            project.mGraph.updateCriticalPath();
+        }
+
+        return project;
+    }
+
+    /**
+     * @return {@code prototype}对应的新{@code Project}，复制名称、监听和失败策略，没有则创建。
+     */
+    private static Project copyProject(Project prototype, Map<Task, Task> copies) {
+        Project project = (Project) copies.get(prototype);
+
+        if (project == null) {
+            project = new Project(prototype.mName);
+            project.copyConfig(prototype);
+            project.mExecuteListeners.addAll(prototype.mExecuteListeners);
+            project.mOnGetMonitorRecordCallback = prototype.mOnGetMonitorRecordCallback;
+            project.mOnGetExecuteRecordsCallback = prototype.mOnGetExecuteRecordsCallback;
+            project.mTraceFile = prototype.mTraceFile;
+            project.mFailurePolicy = prototype.mFailurePolicy;
+            project.setProjectExecuteMonitor(new ExecuteMonitor());
+            copies.put(prototype, project);
+        }
+
+        return project;
+    }
+
+    /**
+     * 图中下标为{@code index}的{@code Task}执行完成，通知它的紧后{@code Task}。所有紧前{@code Task}都已经完成的
+     * 紧后{@code Task}会被启动，其中的锚点直接在当前线程执行。结束锚点执行完成意味着整个{@code Project}执行完成，
+     * 此时通知{@code Project}自己的监听。
+     *
+     * @param index             执行完成的{@code Task}的下标
+     * @param allowContinuation 是否允许当前线程直接执行一个因此就绪的紧后{@code Task}
+     * @return 需要由当前线程直接执行的紧后{@code Task}，没有则返回{@code null}
+     */
+    Task onTaskFinished(int index, boolean allowContinuation) {
+        Task continuation = null;
+        AtomicIntegerArray counter = mDependencyCounter;
+
+        //先回调监听，紧后的锚点会在当前线程同步执行，保证onProjectFinish()在最后一个onTaskFinish()之后。
+        //被取消的Task不回调
+        Task finishedTask = mGraph.getFinishedTask(index);
+        if (finishedTask != null && !mGraph.getTask(index).isCancelled()) {
+            mGraph.getOwner(index).onTaskFinish(finishedTask.mName);
+        }
+
+        if (mIsCancelled) {
+            if (index == ExecutionGraph.FINISH_INDEX) {
+                return notifyFinished(false);
+            }
+
+            //紧后Task由cancelTasks()取消，执行期间被取消的开始锚点需要结束它的Project
+            Task task = mGraph.getTask(index);
+            if (task instanceof AnchorTask) {
+                ((AnchorTask) task).finishProjectIfStarted();
+            }
+
+            return null;
+        }
+
+        //失败的Task以及被跳过的Task，它们的紧后Task都需要跳过
+        AtomicIntegerArray skipFlags = mSkipFlags;
+        boolean isSkipping = skipFlags != null
+                && (skipFlags.get(index) != 0 || mGraph.getTask(index).getFailure() != null);
+
+        for (int i = mGraph.getSuccessorStart(index), end = mGraph.getSuccessorEnd(index); i < end; i++) {
+            int successor = mGraph.getSuccessor(i);
+            if (isSkipping) {
+                skipFlags.set(successor, 1);
+            }
+
+            if (counter.decrementAndGet(successor) != 0 || mIsCancelled) {
+                continue;
+            }
+
+            Task task = mGraph.getTask(successor);
+            if (task.shouldRunInline()) {
+                //锚点不做实际工作，直接在当前线程执行，省去一次线程池的排队和线程切换
+                Task next = task.runInline(allowContinuation && continuation == null);
+                if (next != null) {
+                    continuation = next;
+                }
+            } else if (allowContinuation && continuation == null && task.canRunAsContinuation()) {
+                //优先级最高的一个就绪Task留在当前线程继续执行，省去一次线程池的排队和线程切换
+                if (task.switchToWait()) {
+                    continuation = task;
+                }
+            } else {
+                task.start();
+            }
+        }
+
+        if (index == ExecutionGraph.FINISH_INDEX) {
+            return notifyFinished(allowContinuation);
+        }
+
+        return continuation;
+    }
+
     @Override
     void recycle() {
         super.recycle();
@@ -177,6 +579,16 @@ public class Project extends Task implements OnProjectExecuteListener {
         private ExecuteMonitor mMonitor;
         private TaskFactory mTaskFactory;
 
+        /**
+         * 图中所有的{@code Task}，在列表中的位置即为编译后在执行图中的下标
+         */
+        private List<Task> mTasks;
+        private List<Project> mOwners;
+        private List<Task> mFinishedTasks;
+        private Map<Task, Integer> mTaskIndexes;
+        private ListMultiMap<Task, Task> mSuccessorMap;
+        private boolean mIsTransitiveReduction;
+
         /**
          * 构建{@code ProjectBuilder}实例。
          */
@@ -191,13 +603,46 @@ public class Project extends Task implements OnProjectExecuteListener {
          */
         public Project create() {
             addToRootIfNeed();
+            flattenProjects();
+            addToFinish();
+            checkExecutors(mProject.mName);
             Project project = mProject;
+            ExecutionGraph graph = ExecutionGraph.compile(mTasks, mOwners, mFinishedTasks, mSuccessorMap,
+                    mTaskIndexes, project.mName);
+
+            if (mIsTransitiveReduction) {
+                graph = reduceTransitiveEdges(graph, project.mName);
+            }
+
+            project.setGraph(graph);
+
+            if (AlphaConfig.isCriticalPathFirst()) {
+                graph.updateCriticalPath();
+            }
 
             //创建完成一个Project，重新初始化builder，以便创建下一个Project
             init();
             return project;
         }
 
+        /**
+         * <p>创建一个{@code Project}模板，用于需要多次执行的流程，例如切换账号后重新初始化。</p>
+         * <p>模板只在这里编译一次执行图，之后每次调用{@link ProjectTemplate#newProject()}只需要通过
+         * {@link #withTaskCreator(ITaskCreator)}设置的{@code ITaskCreator}重新创建{@code Task}实例，不再重新排序和校验。
+         * 因此必须先设置{@code ITaskCreator}，并且它能够按名称创建图中所有的{@code Task}，包括嵌套{@code Project}中的。</p>
+         *
+         * @return {@code Project}模板
+         */
+        public ProjectTemplate createTemplate() {
+            if (mTaskFactory == null) {
+                throw new IllegalAccessError(
+                    "You should set a ITaskCreator with withTaskCreator(), and then you can create a ProjectTemplate.");
+            }
+
+            ITaskCreator creator = mTaskFactory.getTaskCreator();
+            return new ProjectTemplate(create(), creator);
+        }
+
         /**
          * 利用TaskCreator，之后可以直接用task name来操作add和after等逻辑。
          */
@@ -206,6 +651,23 @@ public class Project extends Task implements OnProjectExecuteListener {
             return Builder.this;
         }
 
+        /**
+         * <p>作用同{@link #withTaskCreator(ITaskCreator)}，{@code isLazy}为{@code true}时通过名称添加的{@code Task}
+         * 延迟创建：组装执行图时只记录名称，{@code creator}在{@code Task}被派发之后才在执行线程中调用，执行完成后
+         * 实例随即释放。这样组装执行图几乎没有开销，{@code Task}的类加载和构造也不会都落在主线程。</p>
+         * <strong>注意：</strong>延迟创建的{@code Task}在构造函数中设置的执行优先级和监听不会生效，需要在UI线程执行的
+         * {@code Task}、{@link CallbackTask}以及{@code Project}不能延迟创建，创建出来时按照失败策略执行失败。
+         * {@code creator}会在多个执行线程中被同时调用，需要是线程安全的。
+         *
+         * @param creator 按名称创建{@code Task}实例
+         * @param isLazy  是否延迟创建{@code Task}
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder withTaskCreator(ITaskCreator creator, boolean isLazy) {
+            mTaskFactory = new TaskFactory(creator, isLazy);
+            return Builder.this;
+        }
+
         /**
          * 设置{@code Project}执行生命周期的回调，可以监听到{@code Project}开始执行与结束执行，{@code Task}执行结束
          *
@@ -228,6 +690,28 @@ public class Project extends Task implements OnProjectExecuteListener {
             return Builder.this;
         }
 
+        /**
+         * 设置获取{@code Project}中每个{@code Task}详细执行记录的回调接口。
+         *
+         * @param callback 获取详细执行记录的回调接口。
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder setOnGetExecuteRecordsCallback(OnGetExecuteRecordsCallback callback) {
+            mProject.setOnGetExecuteRecordsCallback(callback);
+            return Builder.this;
+        }
+
+        /**
+         * 设置执行完成后导出trace的文件，参见{@link Project#setTraceFile(File)}。
+         *
+         * @param file 导出的文件，{@code null}表示不导出。
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder setTraceFile(File file) {
+            mProject.setTraceFile(file);
+            return Builder.this;
+        }
+
         /**
          * 设置{@code Project}的名称。
          *
@@ -239,6 +723,33 @@ public class Project extends Task implements OnProjectExecuteListener {
             return Builder.this;
         }
 
+        /**
+         * 设置{@code Task}执行失败或者超时时的处理策略，默认是{@link #FAILURE_POLICY_THROW}。嵌套的{@code Project}
+         * 使用最外层{@code Project}的策略。
+         *
+         * @param failurePolicy {@link #FAILURE_POLICY_THROW}、{@link #FAILURE_POLICY_CONTINUE}、
+         *                      {@link #FAILURE_POLICY_SKIP_DOWNSTREAM}或者{@link #FAILURE_POLICY_FAIL_PROJECT}
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder setFailurePolicy(int failurePolicy) {
+            mProject.mFailurePolicy = failurePolicy;
+            return Builder.this;
+        }
+
+        /**
+         * <p>设置创建{@code Project}时是否去掉冗余的依赖，默认是关闭的。</p>
+         * <p>如果一个依赖可以由其他依赖推导出来，例如C在A、B之后，同时B在A之后，那么C对A的依赖是冗余的。去掉冗余依赖
+         * 不会改变执行顺序，但可以减少{@code Task}执行完成后通知紧后{@code Task}的次数。被去掉的依赖会以warning级别的日志
+         * 输出，方便清理配置。</p>
+         *
+         * @param isTransitiveReduction {@code true}去掉冗余的依赖，否则保留所有声明的依赖。
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder setTransitiveReduction(boolean isTransitiveReduction) {
+            mIsTransitiveReduction = isTransitiveReduction;
+            return Builder.this;
+        }
+
         /**
          * 作用同{@link #add(Task)}但直接用task名称进行操作，需要提前调用{@link #withTaskCreator(ITaskCreator)}创建名称对应的task实例
          * @param taskName 增加的{@code Task}对象的名称。
@@ -308,13 +819,45 @@ public class Project extends Task implements OnProjectExecuteListener {
             mCacheTask = task;
             mCacheTask.setExecuteMonitor(mMonitor);
             mIsSetPosition = false;
-            mCacheTask.addOnTaskFinishListener(new InnerOnTaskFinishListener(mProject));
-            mCacheTask.addSuccessor(mFinishTask);
+            addTask(task);
 
             return Builder.this;
         }
 
 
+        /**
+         * <p>增加一个空闲{@code Task}，用法同{@link #add(Task)}。</p>
+         * <p>空闲{@code Task}的紧前{@code Task}都执行完成后不会立即执行，而是等到主线程的消息队列空闲时才执行，
+         * 每次空闲最多执行{@link AlphaConfig#setIdleTaskCountPerWindow(int)}个，适合不影响首帧的初始化。
+         * 在UI线程执行的空闲{@code Task}在主线程执行，其余的在线程池中执行。</p>
+         * <strong>注意：</strong>空闲{@code Task}不计入{@code Project}的完成，{@code Project}执行完成时它们可能还没有
+         * 执行，等待{@code Project}执行完成的线程不会因此被阻塞。空闲{@code Task}之后只能是空闲{@code Task}。
+         *
+         * @param task 增加的空闲{@code Task}对象.
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder addIdle(Task task) {
+            add(task);
+            task.setIdle(true);
+            return Builder.this;
+        }
+
+        /**
+         * 作用同{@link #addIdle(Task)}，但直接用task名称进行操作，需要提前调用{@link #withTaskCreator(ITaskCreator)}
+         * 创建名称对应的task实例
+         *
+         * @param taskName 增加的空闲{@code Task}对象的名称。
+         * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
+         */
+        public Builder addIdle(String taskName) {
+            if (mTaskFactory == null) {
+                throw new IllegalAccessError(
+                    "You should set a ITaskCreator with withTaskCreator(), and then you can call add() and after() with task name.");
+            }
+
+            return addIdle(mTaskFactory.getTask(taskName));
+        }
+
         /**
          * 指定紧前{@code Task}，必须该{@code Task}执行完才能执行自己。如果不指定具体的紧前{@code Task}默认会最开始执行。
          *
@@ -322,8 +865,7 @@ public class Project extends Task implements OnProjectExecuteListener {
          * @return {@code Builder}对象，可以继续添加属性或者组装{@code Task}。
          */
         public Builder after(Task task) {
-            task.addSuccessor(mCacheTask);
-            mFinishTask.removePredecessor(task);
+            addEdge(task, mCacheTask);
             mIsSetPosition = true;
             return Builder.this;
         }
@@ -336,8 +878,7 @@ public class Project extends Task implements OnProjectExecuteListener {
          */
         public Builder after(Task... tasks) {
             for (Task task : tasks) {
-                task.addSuccessor(mCacheTask);
-                mFinishTask.removePredecessor(task);
+                addEdge(task, mCacheTask);
             }
 
             mIsSetPosition = true;
@@ -346,7 +887,184 @@ public class Project extends Task implements OnProjectExecuteListener {
 
         private void addToRootIfNeed() {
             if (!mIsSetPosition && mCacheTask != null) {
-                mStartTask.addSuccessor(mCacheTask);
+                addEdge(mStartTask, mCacheTask);
+            }
+        }
+
+        /**
+         * 没有紧后{@code Task}（空闲{@code Task}不算）的{@code Task}都需要在结束锚点之前执行完，空闲{@code Task}除外。
+         */
+        private void addToFinish() {
+            for (Task task : mTasks) {
+                if (task.isIdle()) {
+                    checkIdleSuccessors(task);
+                } else if (task != mFinishTask && !hasNonIdleSuccessor(task)) {
+                    addEdge(task, mFinishTask);
+                }
+            }
+        }
+
+        private boolean hasNonIdleSuccessor(Task task) {
+            List<Task> successors = mSuccessorMap.get(task);
+            if (successors == null) {
+                return false;
+            }
+
+            for (Task successor : successors) {
+                if (!successor.isIdle()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * 空闲{@code Task}之后的{@code Task}也只能在空闲时执行，如果不是空闲{@code Task}，结束锚点就会间接依赖
+         * 空闲{@code Task}。
+         */
+        private void checkIdleSuccessors(Task task) {
+            List<Task> successors = mSuccessorMap.get(task);
+            if (successors == null) {
+                return;
+            }
+
+            for (Task successor : successors) {
+                if (!successor.isIdle()) {
+                    throw new RuntimeException("Task " + successor.mName + " should not run after idle task "
+                            + task.mName + ", make it an idle task too.");
+                }
+            }
+        }
+
+        private ExecutionGraph reduceTransitiveEdges(ExecutionGraph graph, String projectName) {
+            ListMultiMap<Task, Task> transitiveEdges = graph.findTransitiveEdges();
+            if (transitiveEdges == null) {
+                return graph;
+            }
+
+            for (Task task : mTasks) {
+                List<Task> successors = transitiveEdges.get(task);
+                if (successors == null) {
+                    continue;
+                }
+
+                for (Task successor : successors) {
+                    mSuccessorMap.remove(task, successor);
+                    AlphaLog.w(AlphaLog.GLOBAL_TAG, "Redundant dependency " + task.mName + " -> " + successor.mName
+                            + " in project " + projectName + " is removed, it is implied by other dependencies.");
+                }
+            }
+
+            return ExecutionGraph.compile(mTasks, mOwners, mFinishedTasks, mSuccessorMap, mTaskIndexes, projectName);
+        }
+
+        /**
+         * 检查每个{@code Task}指定的线程池都已经注册，否则要等到它就绪时才会在紧前{@code Task}的线程中抛出异常，
+         * 启动流程会停在中途。
+         */
+        private void checkExecutors(String projectName) {
+            for (Task task : mTasks) {
+                String executorName = task.getExecutorName();
+                if (!AlphaConfig.hasExecutor(executorName)) {
+                    throw new RuntimeException("No such executor: " + executorName + " for task " + task.mName
+                            + " in project " + projectName + ", register it with AlphaConfig.registerExecutor() first.");
+                }
+            }
+        }
+
+        /**
+         * <p>将嵌套的{@code Project}展开到当前的执行图中：对{@code Project}的依赖改为对它的结束锚点的依赖，
+         * {@code Project}对其他{@code Task}的依赖改为它的开始锚点的依赖。这样嵌套的{@code Project}不再作为一个
+         * {@code Task}执行，它的锚点和当前{@code Project}的锚点一样直接在使它就绪的线程中执行，启动耗时不会随着
+         * 嵌套层数增加。</p>
+         * <p>展开后内部的{@code Task}执行完成时仍然通知原来所在的{@code Project}，嵌套{@code Project}执行完成时
+         * 通知当前{@code Project}，与展开前一致。嵌套{@code Project}创建时已经展开过它自己嵌套的{@code Project}，
+         * 所以这里只需要展开一层。</p>
+         */
+        private void flattenProjects() {
+            boolean hasProject = false;
+            for (Task task : mTasks) {
+                if (task instanceof Project) {
+                    hasProject = true;
+                    break;
+                }
+            }
+
+            if (!hasProject) {
+                return;
+            }
+
+            List<Task> tasks = mTasks;
+            List<Project> owners = mOwners;
+            List<Task> finishedTasks = mFinishedTasks;
+            ListMultiMap<Task, Task> successorMap = mSuccessorMap;
+            mTasks = new ArrayList<Task>();
+            mOwners = new ArrayList<Project>();
+            mFinishedTasks = new ArrayList<Task>();
+            mTaskIndexes = new HashMap<Task, Integer>();
+            mSuccessorMap = new ListMultiMap<Task, Task>();
+
+            for (int i = 0, size = tasks.size(); i < size; i++) {
+                Task task = tasks.get(i);
+                if (!(task instanceof Project)) {
+                    addTask(task, owners.get(i), finishedTasks.get(i));
+                    continue;
+                }
+
+                ExecutionGraph graph = ((Project) task).mGraph;
+                for (int j = 0, count = graph.getTaskCount(); j < count; j++) {
+                    Task innerTask = graph.getTask(j);
+
+                    if (j == ExecutionGraph.FINISH_INDEX) {
+                        //嵌套Project的结束锚点执行完成，即该Project执行完成
+                        addTask(innerTask, owners.get(i), task);
+                    } else {
+                        addTask(innerTask, graph.getOwner(j), graph.getFinishedTask(j));
+                    }
+
+                    for (int k = graph.getSuccessorStart(j), end = graph.getSuccessorEnd(j); k < end; k++) {
+                        mSuccessorMap.put(innerTask, graph.getTask(graph.getSuccessor(k)));
+                    }
+                }
+            }
+
+            for (Task task : tasks) {
+                List<Task> successors = successorMap.get(task);
+                if (successors == null) {
+                    continue;
+                }
+
+                Task from = task instanceof Project ? ((Project) task).mFinishTask : task;
+                for (Task successor : successors) {
+                    mSuccessorMap.put(from, successor instanceof Project ? ((Project) successor).mStartTask : successor);
+                }
+            }
+        }
+
+        private void addTask(Task task) {
+            addTask(task, mProject, task);
+        }
+
+        private void addTask(Task task, Project owner, Task finishedTask) {
+            if (!mTaskIndexes.containsKey(task)) {
+                mTaskIndexes.put(task, mTasks.size());
+                mTasks.add(task);
+                mOwners.add(owner);
+                mFinishedTasks.add(finishedTask);
+            }
+        }
+
+        private void addEdge(Task predecessor, Task successor) {
+            if (predecessor == successor) {
+                throw new RuntimeException("A task should not after itself.");
+            }
+
+            addTask(predecessor);
+            addTask(successor);
+
+            if (!mSuccessorMap.contains(predecessor, successor)) {
+                mSuccessorMap.put(predecessor, successor);
             }
         }
 
@@ -358,27 +1076,22 @@ public class Project extends Task implements OnProjectExecuteListener {
             mFinishTask.setProjectLifecycleCallbacks(mProject);
             mStartTask = new AnchorTask(true, "==AlphaDefaultStartTask==");
             mStartTask.setProjectLifecycleCallbacks(mProject);
+            mFinishTask.setStartAnchor(mStartTask);
             mProject.setStartTask(mStartTask);
             mProject.setFinishTask(mFinishTask);
             mMonitor = new ExecuteMonitor();
             mProject.setProjectExecuteMonitor(mMonitor);
+            mTasks = new ArrayList<Task>();
+            mOwners = new ArrayList<Project>();
+            mFinishedTasks = new ArrayList<Task>();
+            mTaskIndexes = new HashMap<Task, Integer>();
+            mSuccessorMap = new ListMultiMap<Task, Task>();
+            addTask(mStartTask, mProject, null);
+            addTask(mFinishTask, mProject, null);
         }
 
     }
 
-    private static class InnerOnTaskFinishListener implements OnTaskFinishListener{
-        private Project mProject;
-
-        InnerOnTaskFinishListener(Project project) {
-            mProject = project;
-        }
-        @Override
-        public void onTaskFinish(String taskName) {
-            mProject.onTaskFinish(taskName);
-        }
-    }
-
-
     /**
      * <p>从图的执行角度来讲，应该要有唯一的开始位置和唯一的结束位置。这样就可以准确衡量一个图的开始和结束。并且可以
      * 通过开始点和结束点，方便地将这个图嵌入到另外一个图中去。</p>
@@ -393,17 +1106,74 @@ public class Project extends Task implements OnProjectExecuteListener {
      */
     private static class AnchorTask extends Task {
         private boolean mIsStartTask = true;
-        private OnProjectExecuteListener mExecuteListener;
+        private Project mExecuteListener;
+        private AnchorTask mStartAnchor;
+        private AnchorTask mFinishAnchor;
 
         public AnchorTask(boolean isStartTask, String name) {
             super(name);
             mIsStartTask = isStartTask;
         }
 
-        public void setProjectLifecycleCallbacks(OnProjectExecuteListener callbacks) {
+        @Override
+        long getEstimatedCostTime() {
+            return 0;
+        }
+
+        @Override
+        boolean shouldRunInline() {
+            return true;
+        }
+
+        /**
+         * 锚点在使它就绪的线程中同步执行，已经开始执行的不取消，由那个线程执行完。回调了onProjectStart()的
+         * {@code Project}在取消时也要结束，保证之后会回调onProjectFinish()。
+         */
+        @Override
+        void cancel() {
+            if (mIsStartTask) {
+                cancelIfIdle();
+                return;
+            }
+
+            int startState = mStartAnchor.getCurrentState();
+            if (startState == STATE_FINISHED) {
+                runInline(false);
+            } else if (startState == STATE_IDLE || startState == STATE_CANCELLED) {
+                super.cancel();
+            }
+
+            //开始锚点正在执行，由它执行完之后调用finishProjectIfStarted()
+        }
+
+        /**
+         * 开始锚点在{@code Project}被取消之后才执行完成时调用，结束这个{@code Project}。结束锚点已经执行过时不做任何事情。
+         */
+        /*package*/ void finishProjectIfStarted() {
+            if (mIsStartTask && mFinishAnchor != null) {
+                mFinishAnchor.runInline(false);
+            }
+        }
+
+        public void setProjectLifecycleCallbacks(Project callbacks) {
             mExecuteListener = callbacks;
         }
 
+        /**
+         * @return 复制的锚点，{@link #mStartAnchor}需要另外设置。
+         */
+        /*package*/ AnchorTask newInstance(Project callbacks) {
+            AnchorTask anchor = new AnchorTask(mIsStartTask, mName);
+            anchor.copyConfig(this);
+            anchor.setProjectLifecycleCallbacks(callbacks);
+            return anchor;
+        }
+
+        public void setStartAnchor(AnchorTask startAnchor) {
+            mStartAnchor = startAnchor;
+            startAnchor.mFinishAnchor = this;
+        }
+
         @Override
         public void run() {
             if (mExecuteListener != null) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+/**
+ * <p>可以多次执行的{@code Project}模板，通过{@link Project.Builder#createTemplate()}创建。</p>
+ * <p>{@code Project}执行一次之后就不能再执行，需要多次执行的流程每次都要重新组装并编译执行图。模板把编译好的执行图
+ * 保存下来，每次调用{@link #newProject()}只创建新的{@code Task}实例以及计数器等执行状态，执行图本身在所有
+ * {@code Project}之间共享。创建出来的{@code Project}互不影响，可以同时执行。</p>
+ * <strong>注意：</strong>模板本身是只读的，可以在多个线程中使用。监听会被所有创建出来的{@code Project}共享，
+ * 同时执行时需要注意线程安全。
+ */
+public final class ProjectTemplate {
+    private final Project mPrototype;
+    private final ITaskCreator mTaskCreator;
+
+    /*package*/ ProjectTemplate(Project prototype, ITaskCreator taskCreator) {
+        mPrototype = prototype;
+        mTaskCreator = taskCreator;
+    }
+
+    /**
+     * @return 模板对应的{@code Project}名称
+     */
+    public String getName() {
+        return mPrototype.mName;
+    }
+
+    /**
+     * 创建一个新的{@code Project}，可以直接执行，也可以作为{@code Task}嵌入到其他{@code Project}中。
+     *
+     * @return 新的{@code Project}
+     */
+    public Project newProject() {
+        return mPrototype.instantiate(mTaskCreator);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>启动流程配置，和XML配置文件一一对应，由编译时根据XML配置文件生成的代码创建，参见alpha-config.gradle。</p>
+ * <p>通过{@link AlphaManager#addProjectsViaFile(java.io.InputStream)}设置启动流程时，需要在主线程解析XML，并且通过反射
+ * 创建每一个{@code task}。生成的代码直接调用这个类描述启动流程，并为每一个{@code Project}提供一个{@link ITaskCreator}，
+ * 省去了这两部分的耗时，组装{@code Project}的逻辑和XML配置文件完全相同。</p>
+ * <p>{@code task}实例只有在所属的{@code Project}和当前进程匹配时才会通过{@link ITaskCreator}创建，其他进程的
+ * {@code task}不会被创建，对应的类也不会被加载。</p>
+ */
+public final class StartupConfig {
+    private final List<ConfigParser.TaskBundle> mBundles = new ArrayList<ConfigParser.TaskBundle>();
+    private ConfigParser.TaskBundle mCurrentBundle;
+
+    /**
+     * 开始描述一个{@code Project}，对应XML中的{@code <project>}，之后添加的{@code task}都属于这个{@code Project}。
+     *
+     * @param mode                  执行模式，{@link AlphaManager#ALL_PROCESS_MODE}、
+     *                              {@link AlphaManager#MAIN_PROCESS_MODE}或者{@link AlphaManager#SECONDARY_PROCESS_MODE}
+     * @param processName           进程名称，对应{@code process}属性，可以为{@code null}
+     * @param isTransitiveReduction 对应{@code transitiveReduction}属性
+     * @param isLazy                对应{@code lazy}属性，为{@code true}时{@code task}在执行前才创建，参见{@link LazyTask}
+     * @param creator               根据{@code task}名称创建这个{@code Project}中的{@code task}实例，只有在{@code Project}
+     *                              和当前进程匹配时才会被调用；{@code isLazy}为{@code true}时会在多个执行线程中被同时调用
+     * @return {@code StartupConfig}对象，可以继续添加{@code Project}或者{@code task}。
+     */
+    public StartupConfig addProject(int mode, String processName, boolean isTransitiveReduction, boolean isLazy,
+                                    ITaskCreator creator) {
+        if (creator == null) {
+            throw new IllegalArgumentException("ITaskCreator should not be null.");
+        }
+
+        mCurrentBundle = new ConfigParser.TaskBundle(mode, processName, new ArrayList<ConfigParser.TaskInfo>());
+        mCurrentBundle.isTransitiveReduction = isTransitiveReduction;
+        mCurrentBundle.isLazy = isLazy;
+        mCurrentBundle.taskCreator = creator;
+        mBundles.add(mCurrentBundle);
+        return this;
+    }
+
+    /**
+     * 添加一个{@code task}，对应XML中的{@code <task>}，{@code task}实例由所属{@code Project}的{@link ITaskCreator}创建。
+     *
+     * @param name            {@code task}名称，对应{@code name}属性
+     * @param predecessors    紧前{@code task}的名称，多个用逗号分隔，对应{@code predecessor}属性，可以为{@code null}
+     * @param threadPriority  对应{@code threadPriority}属性，没有设置时为0
+     * @param executePriority 对应{@code executePriority}属性，没有设置时为{@link Task#DEFAULT_EXECUTE_PRIORITY}
+     * @param isIdle          对应{@code idle}属性
+     * @param executorName    对应{@code executor}属性，可以为{@code null}
+     * @return {@code StartupConfig}对象，可以继续添加{@code Project}或者{@code task}。
+     */
+    public StartupConfig addTask(String name, String predecessors, int threadPriority, int executePriority,
+                                 boolean isIdle, String executorName) {
+        if (mCurrentBundle == null) {
+            throw new IllegalStateException("You should call addProject() before addTask().");
+        }
+
+        ConfigParser.TaskInfo info = new ConfigParser.TaskInfo(name, null);
+        info.threadPriority = threadPriority;
+        info.executePriority = executePriority;
+        info.isIdle = isIdle;
+        info.executorName = executorName;
+
+        List<String> predecessorList = ConfigParser.parsePredecessorId(predecessors);
+        if (predecessorList != null) {
+            info.addPredecessors(predecessorList);
+        }
+
+        mCurrentBundle.taskList.add(info);
+        return this;
+    }
+
+    /*package*/ List<ConfigParser.ProjectInfo> createProjects(ConfigParser parser) {
+        List<ConfigParser.ProjectInfo> result = new ArrayList<ConfigParser.ProjectInfo>(mBundles.size());
+
+        for (ConfigParser.TaskBundle bundle : mBundles) {
+            if (parser.isCurrentProcess(bundle.mode, bundle.processName)) {
+                result.add(parser.createProject(bundle));
+            }
+        }
+
+        return result;
+    }
+}
@@ -16,14 +16,17 @@
 
 package com.alibaba.android.alpha;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Debug;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>这个类将一个个关联的{@code Task}，组织成PERT网路图的方式进行执行。可以通过{@link Project.Builder}
@@ -54,6 +57,11 @@ public abstract class Task {
      */
     public static final int STATE_WAIT = 3;
 
+    /**
+     * {@code Task}执行状态，{@code Task}被取消，没有执行或者没有等到执行结束，参见{@link Project#cancel()}
+     */
+    public static final int STATE_CANCELLED = 4;
+
     /**
      * 默认的执行优先级
      */
@@ -71,13 +79,27 @@ public abstract class Task {
 
     private static ExecutorService sExecutor = AlphaConfig.getExecutor();
 
-    private static Handler sHandler = new Handler(Looper.getMainLooper());
+    private static MainThreadExecutor sMainThreadExecutor = new MainThreadExecutor();
+
+    private static IdleTaskExecutor sIdleTaskExecutor = new IdleTaskExecutor();
+
+    private static final AtomicLong sDispatchSequence = new AtomicLong();
 
     /**
      * 是否在主线程执行
      */
     private boolean mIsInUiThread;
 
+    /**
+     * 是否是空闲{@code Task}，参见{@link Project.Builder#addIdle(Task)}
+     */
+    private boolean mIsIdle;
+
+    /**
+     * 执行该{@code Task}的线程池名称，{@code null}表示默认线程池
+     */
+    private String mExecutorName;
+
     private Runnable mInternalRunnable;
 
     protected String mName;
@@ -86,11 +108,74 @@ public abstract class Task {
 
     private volatile int mCurrentState = STATE_IDLE;
 
-    private List<Task> mSuccessorList = new ArrayList<Task>();
-    protected Set<Task> mPredecessorSet = new HashSet<Task>();
+    /**
+     * 该{@code Task}所在的{@code Project}，以及它在{@code Project}执行图中的下标，执行完成后由{@code Project}
+     * 通知紧后{@code Task}
+     */
+    private Project mProject;
+    private int mIndexInProject = -1;
 
     private ExecuteMonitor mTaskExecuteMonitor;
 
+    /**
+     * 在{@link #mTaskExecuteMonitor}中登记的下标
+     */
+    private int mExecuteMonitorIndex = -1;
+
+    /**
+     * 执行记录的各个时间点，单位纳秒，参见{@link TaskExecuteRecord}
+     */
+    private long mReadyTime;
+    private long mDequeueTime;
+    private long mStartTime;
+    private long mRunEndTime;
+    private volatile long mFinishTime;
+
+    /**
+     * 执行{@link #run()}的线程名称，以及期间占用的CPU时间
+     */
+    private String mThreadName;
+    private long mThreadCpuTime;
+
+    /**
+     * 执行超时时间，单位纳秒，小于等于0表示不限制
+     */
+    private long mTimeout;
+
+    /**
+     * 超时检查，执行结束时取消，由{@code this}保护
+     */
+    private Future<?> mTimeoutFuture;
+
+    /**
+     * 正在执行{@link #run()}的线程，取消或者超时时中断它，由{@code this}保护
+     */
+    private Thread mRunningThread;
+
+    /**
+     * 执行失败的原因，包括超时
+     */
+    private volatile RuntimeException mFailure;
+
+    /**
+     * 从该{@code Task}开始到{@code Project}结束点的最长路径的预估耗时，关键路径调度时越大越先执行
+     */
+    private volatile long mCriticalPathTime;
+
+    /**
+     * 提交到线程池的顺序，关键路径长度和执行优先级都相同时，先提交的先执行
+     */
+    private volatile long mDispatchSequence;
+
+    /**
+     * 是否被{@link AlphaManager#require(String)}提前，被提前的{@code Task}在线程池的缓存队列中排在最前面
+     */
+    private volatile boolean mIsBoosted;
+
+    /**
+     * 等待该{@code Task}执行完成的闩锁，需要时才创建，由{@code this}保护
+     */
+    private CountDownLatch mFinishLatch;
 
     /**
      * 构造{@code Task}对象，必须要传入{@code name}，便于确定当前是在哪一个任务中。该{@code Task}在异步线程
@@ -136,42 +221,18 @@ public abstract class Task {
      * 执行当前{@code Task}的任务，这里会调用用户自定义的{@link #run()}。
      */
     public synchronized void start() {
-        if (mCurrentState != STATE_IDLE) {
-            throw new RuntimeException("You try to run task " + mName + " twice, is there a circular dependency?");
-        }
-
-        switchState(STATE_WAIT);
-
-        if (mInternalRunnable == null) {
-            mInternalRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    android.os.Process.setThreadPriority(mThreadPriority);
-                    long startTime = System.currentTimeMillis();
-
-                    switchState(STATE_RUNNING);
-                    Task.this.run();
-                    switchState(STATE_FINISHED);
-
-                    long finishTime = System.currentTimeMillis();
-                    recordTime((finishTime - startTime));
-
-                    notifyFinished();
-                    recycle();
-                }
-            };
+        if (!switchToWait()) {
+            //已经被取消
+            return;
         }
 
-        if (mIsInUiThread) {
-            sHandler.post(mInternalRunnable);
-        } else {
-            sExecutor.execute(mInternalRunnable);
-        }
+        dispatch();
     }
 
     /**
      * <p>增加{@code Task}执行结束的监听，当该{@code Task}执行结束时，会回调
-     * {@link Task.OnTaskFinishListener#onTaskFinish(String)}。</p>
+     * {@link Task.OnTaskFinishListener#onTaskFinish(String)}。被取消的{@code Task}同样会回调，可以通过
+     * {@link #isCancelled()}区分。</p>
      * <strong>注意：</strong>回调函数在{@code Task}所在线程中回调，注意线程安全。
      *
      * @param listener 监听{@code Task}执行结束的{@code listener}
@@ -216,6 +277,35 @@ public abstract class Task {
         return mCurrentState == STATE_FINISHED;
     }
 
+    /**
+     * 判断当前{@code Task}是否被取消，即状态是否是{@link #STATE_CANCELLED}
+     *
+     * @return {@code true}表示被取消，否则表示尚未执行、正在执行或者已经执行结束。
+     */
+    public boolean isCancelled() {
+        return mCurrentState == STATE_CANCELLED;
+    }
+
+    /**
+     * @return 执行失败的原因，包括超时；没有失败时返回{@code null}。失败的{@code Task}同样是执行结束状态，
+     * 紧后{@code Task}怎样处理由{@link Project.Builder#setFailurePolicy(int)}决定。
+     */
+    public RuntimeException getFailure() {
+        return mFailure;
+    }
+
+    /**
+     * 设置执行的超时时间，默认不限制。超时后正在执行的线程会被中断，该{@code Task}按照执行失败处理，不再等待
+     * {@link #run()}返回，参见{@link Project.Builder#setFailurePolicy(int)}。
+     * 对{@link CallbackTask}来说，是从开始执行到通知执行完成的时间。
+     *
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit    {@code timeout}的单位
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        mTimeout = unit.toNanos(timeout);
+    }
+
 
     /**
      * 设置执行优先级。对于<strong>同一时机</strong>执行的{@code task}，由于线程池的线程数有限，
@@ -234,84 +324,244 @@ public abstract class Task {
         return mExecutePriority;
     }
 
+    /**
+     * 设置执行该{@code Task}的线程池，例如{@link AlphaConfig#EXECUTOR_IO}，或者通过
+     * {@link AlphaConfig#registerExecutor(String, ExecutorService)}注册的线程池名称。默认在
+     * {@link AlphaConfig#EXECUTOR_CPU}中执行，对在UI线程执行的{@code Task}不生效。
+     *
+     * @param executorName 线程池名称
+     */
+    public void setExecutorName(String executorName) {
+        mExecutorName = executorName;
+    }
+
+    /**
+     * @return 执行该{@code Task}的线程池名称，{@code null}表示默认线程池。
+     */
+    public String getExecutorName() {
+        return mExecutorName;
+    }
+
     //==============================================================================================
     // INNER API
     //==============================================================================================
 
     /**
-     * 增加紧前{@code Task}
+     * 设置该{@code Task}所在的{@code Project}，在{@link Project.Builder#create()}编译执行图时调用。
      *
-     * @param task 紧前{@code Task}
+     * @param project 所在的{@code Project}
+     * @param index   在{@code Project}执行图中的下标
      */
-    /*package*/ void addPredecessor(Task task) {
-        mPredecessorSet.add(task);
+    /*package*/ void setProject(Project project, int index) {
+        mProject = project;
+        mIndexInProject = index;
     }
 
 
     /**
-     * 移除紧前{@code Task}
+     * 把已经切换到{@link #STATE_WAIT}状态的{@code Task}放入对应的队列。
+     */
+    /*package*/ synchronized void dispatch() {
+        if (mInternalRunnable == null) {
+            mInternalRunnable = new InternalRunnable();
+        }
+
+        mDispatchSequence = sDispatchSequence.getAndIncrement();
+
+        if (mIsIdle) {
+            sIdleTaskExecutor.execute(mInternalRunnable);
+        } else if (mIsInUiThread) {
+            sMainThreadExecutor.execute(mInternalRunnable);
+        } else {
+            getExecutorService().execute(mInternalRunnable);
+        }
+    }
+
+    /**
+     * 通知所有紧后{@code Task}以及{@code OnTaskFinishListener}自己执行完成。
      *
-     * @param task 紧前{@code Task}
+     * @param allowContinuation 是否允许当前线程直接执行一个因此就绪的紧后{@code Task}
+     * @return 需要由当前线程直接执行的紧后{@code Task}，它已经切换到{@link #STATE_WAIT}状态；没有则返回{@code null}
      */
-    /*package*/ void removePredecessor(Task task) {
-        mPredecessorSet.remove(task);
+    /*package*/ Task notifyFinished(boolean allowContinuation) {
+        Task continuation = null;
+
+        if (mProject != null) {
+            continuation = mProject.onTaskFinished(mIndexInProject, allowContinuation);
+        }
+
+        if (!mTaskFinishListeners.isEmpty()) {
+            //按下标遍历，执行完成时不创建迭代器
+            for (int i = 0, size = mTaskFinishListeners.size(); i < size; i++) {
+                mTaskFinishListeners.get(i).onTaskFinish(mName);
+            }
+
+            mTaskFinishListeners.clear();
+        }
+
+        return continuation;
+    }
+
+    /**
+     * @return 该{@code Task}是否可以作为紧前{@code Task}的后续，直接在紧前{@code Task}所在的线程池线程中执行。
+     */
+    /*package*/ boolean canRunAsContinuation() {
+        return !mIsInUiThread && !mIsIdle && isInDefaultExecutor();
+    }
+
+    /*package*/ boolean isInUiThread() {
+        return mIsInUiThread;
+    }
+
+    /*package*/ void setIdle(boolean isIdle) {
+        mIsIdle = isIdle;
     }
 
+    /*package*/ boolean isIdle() {
+        return mIsIdle;
+    }
 
     /**
-     * 增加紧后{@code Task}
-     *
-     * @param task 紧后{@code Task}
+     * @return 执行该{@code Task}的线程池
      */
-    /*package*/ void addSuccessor(Task task) {
-        if (task == this) {
-            throw new RuntimeException("A task should not after itself.");
+    /*package*/ ExecutorService getExecutorService() {
+        if (mExecutorName != null && !AlphaConfig.EXECUTOR_CPU.equals(mExecutorName)) {
+            return AlphaConfig.getExecutor(mExecutorName);
         }
 
-        task.addPredecessor(this);
-        mSuccessorList.add(task);
+        int band = ThreadPriority.getBand(mThreadPriority);
+        return band == ThreadPriority.BAND_DEFAULT ? sExecutor : AlphaConfig.getBandExecutor(band);
     }
 
+    /**
+     * @return 该{@code Task}是否直接在使它就绪的线程中同步执行，不经过线程池或者UI线程的消息队列。只适用于锚点这样
+     * 不做实际工作的{@code Task}。
+     */
+    /*package*/ boolean shouldRunInline() {
+        return false;
+    }
 
     /**
-     * 通知所有紧后{@code Task}以及{@code OnTaskFinishListener}自己执行完成。
+     * 在当前线程同步执行该{@code Task}，并通知紧后{@code Task}。
+     *
+     * @param allowContinuation 是否允许当前线程直接执行一个因此就绪的紧后{@code Task}
+     * @return 需要由当前线程接着执行的紧后{@code Task}，没有则返回{@code null}
      */
-    /*package*/ void notifyFinished() {
-        if (!mSuccessorList.isEmpty()) {
-            AlphaUtils.sort(mSuccessorList);
+    /*package*/ Task runInline(boolean allowContinuation) {
+        if (!switchToWaitIfIdle()) {
+            //已经被取消，或者正在被取消Project的线程执行
+            return null;
+        }
 
-            for (Task task : mSuccessorList) {
-                task.onPredecessorFinished(this);
-            }
+        switchState(STATE_RUNNING);
+        mThreadName = Thread.currentThread().getName();
+        mDequeueTime = mStartTime = System.nanoTime();
+        run();
+        mRunEndTime = mFinishTime = System.nanoTime();
+
+        if (!switchToFinished(STATE_FINISHED, null)) {
+            //执行期间被取消，已经由取消的线程通知过了
+            return null;
         }
 
-        if (!mTaskFinishListeners.isEmpty()) {
-            for (OnTaskFinishListener listener : mTaskFinishListeners) {
-                listener.onTaskFinish(mName);
+        Task continuation = notifyFinished(allowContinuation);
+        recycle();
+        return continuation;
+    }
+
+    /**
+     * @return {@code true}表示{@link #run()}返回时该{@code Task}还没有执行完，需要通过{@link #finish(boolean)}通知
+     * 执行完成，参见{@link CallbackTask}。
+     */
+    /*package*/ boolean isCompletedByCallback() {
+        return false;
+    }
+
+    /**
+     * 取消尚未开始执行的{@code Task}，已经开始执行的不受影响。
+     *
+     * @return {@code true}取消成功，{@code false}已经开始执行或者已经结束。
+     */
+    /*package*/ boolean cancelIfIdle() {
+        synchronized (this) {
+            if (mCurrentState != STATE_IDLE || !switchToFinished(STATE_CANCELLED, null)) {
+                return false;
             }
+        }
 
-            mTaskFinishListeners.clear();
+        notifyFinished(false);
+        recycle();
+        return true;
+    }
+
+    /**
+     * 取消该{@code Task}，正在执行的会被中断，不再等待它执行结束。已经执行结束的不受影响。
+     */
+    /*package*/ void cancel() {
+        //先切换状态再中断，被中断的线程从run()返回时不会再把状态改为执行完成
+        if (!switchToFinished(STATE_CANCELLED, null)) {
+            return;
         }
+
+        interruptRunningThread();
+        notifyFinished(false);
+        recycle();
     }
 
+    /**
+     * 切换到执行完成状态，记录耗时，并通知紧后{@code Task}。
+     *
+     * @param allowContinuation 是否允许当前线程直接执行一个因此就绪的紧后{@code Task}
+     * @return 需要由当前线程接着执行的紧后{@code Task}，没有则返回{@code null}
+     */
+    /*package*/ Task finish(boolean allowContinuation) {
+        return complete(STATE_FINISHED, null, allowContinuation);
+    }
 
     /**
-     * 某一个紧前{@code Task}执行完成，如果所有的紧前{@code Task}都执行完成，则调用自己的{@link #start()}
-     * 执行自己的任务。<br>
-     * 该函数由紧前{@code Task}的{@link #notifyFinished()}来调用。
+     * 该{@code Task}执行失败，按照所在{@code Project}的失败策略处理。
+     *
+     * @param failure           失败的原因
+     * @param allowContinuation 是否允许当前线程直接执行一个因此就绪的紧后{@code Task}
+     * @return 需要由当前线程接着执行的紧后{@code Task}，没有则返回{@code null}
      */
-    /*package*/
-    synchronized void onPredecessorFinished(Task beforeTask) {
+    /*package*/ Task fail(RuntimeException failure, boolean allowContinuation) {
+        if (mCurrentState != STATE_RUNNING) {
+            //超时或者被取消之后run()才抛出异常，已经处理过了
+            return null;
+        }
 
-        if (mPredecessorSet.isEmpty()) {
-            return;
+        AlphaLog.w(failure);
+        Project project = mProject;
+
+        if (project == null || project.getFailurePolicy() != Project.FAILURE_POLICY_FAIL_PROJECT
+                && project.getFailurePolicy() != Project.FAILURE_POLICY_THROW) {
+            return complete(STATE_FINISHED, failure, allowContinuation);
         }
 
-        mPredecessorSet.remove(beforeTask);
-        if (mPredecessorSet.isEmpty()) {
-            start();
+        //先标记取消，紧后Task不会再被启动
+        boolean isCancelling = project.setCancelled();
+        complete(STATE_FINISHED, failure, false);
+
+        if (isCancelling) {
+            project.cancelTasks();
         }
 
+        return null;
+    }
+
+    /**
+     * 复制{@code prototype}的配置，包括优先级、线程池、超时以及{@code OnTaskFinishListener}，不包括执行状态。
+     * 用于从{@link ProjectTemplate}创建新的{@code Project}。
+     */
+    /*package*/ void copyConfig(Task prototype) {
+        mExecutePriority = prototype.mExecutePriority;
+        mThreadPriority = prototype.mThreadPriority;
+        mIsInUiThread = prototype.mIsInUiThread;
+        mIsIdle = prototype.mIsIdle;
+        mExecutorName = prototype.mExecutorName;
+        mTimeout = prototype.mTimeout;
+        mTaskFinishListeners.addAll(prototype.mTaskFinishListeners);
     }
 
     /*package*/ void setName(String name) {
@@ -322,18 +572,130 @@ public abstract class Task {
         mThreadPriority = threadPriority;
     }
 
+    /*package*/ int getThreadPriority() {
+        return mThreadPriority;
+    }
+
     /*package*/ void setExecuteMonitor(ExecuteMonitor monitor) {
         mTaskExecuteMonitor = monitor;
+        mExecuteMonitorIndex = monitor != null ? monitor.register(this) : -1;
+    }
+
+    /*package*/ ExecuteMonitor getExecuteMonitor() {
+        return mTaskExecuteMonitor;
+    }
+
+    /*package*/ long getCriticalPathTime() {
+        return mCriticalPathTime;
+    }
+
+    /*package*/ long getDispatchSequence() {
+        return mDispatchSequence;
+    }
+
+    /*package*/ boolean isBoosted() {
+        return mIsBoosted;
+    }
+
+    /**
+     * <p>将该{@code Task}提前执行。尚未就绪的{@code Task}就绪后会排在线程池缓存队列的最前面；已经在缓存队列中的
+     * {@code Task}会被移出队列再重新放入，排到最前面。</p>
+     * <p>只有缓存队列是{@link PriorityBlockingQueue}的{@link ThreadPoolExecutor}、UI线程的队列以及空闲{@code Task}的
+     * 队列才能调整已经在队列中的{@code Task}，工作窃取模式的线程池不支持。</p>
+     *
+     * @return {@code false}如果之前已经提前过，否则返回{@code true}。
+     */
+    /*package*/ synchronized boolean boost() {
+        if (mIsBoosted) {
+            return false;
+        }
+
+        //在优先队列中的元素不能直接修改排序依据，否则会破坏堆的结构，需要先移出队列。
+        //start()同样持有this，所以不会在这期间被放入队列。
+        boolean isWaiting = mCurrentState == STATE_WAIT;
+        boolean isRemovedFromIdleQueue = isWaiting && mIsIdle && sIdleTaskExecutor.remove(mInternalRunnable);
+        boolean isRemoved = isWaiting && !isRemovedFromIdleQueue && removeFromQueue();
+        mIsBoosted = true;
+
+        if (isRemovedFromIdleQueue) {
+            //空闲Task仍然等到主线程空闲时才执行，只是排到空闲队列的最前面
+            sIdleTaskExecutor.execute(mInternalRunnable);
+            return true;
+        }
+
+        if (!isRemoved) {
+            return true;
+        }
+
+        if (mIsInUiThread) {
+            sMainThreadExecutor.execute(mInternalRunnable);
+        } else {
+            getExecutorService().execute(mInternalRunnable);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return 在该{@code Task}执行完成或者被取消时打开的闩锁，如果已经结束则直接返回打开的闩锁。
+     */
+    /*package*/ synchronized CountDownLatch getFinishLatch() {
+        if (mFinishLatch == null) {
+            boolean isDone = mCurrentState == STATE_FINISHED || mCurrentState == STATE_CANCELLED;
+            mFinishLatch = new CountDownLatch(isDone ? 0 : 1);
+        }
+
+        return mFinishLatch;
+    }
+
+    /**
+     * 更新从该{@code Task}开始到结束点的最长路径的预估耗时，即自己的预估耗时加上所有紧后{@code Task}中最长的路径。
+     *
+     * @param downstreamTime 所有紧后{@code Task}中最长的路径
+     * @return 最长路径的预估耗时
+     */
+    /*package*/ long updateCriticalPathTime(long downstreamTime) {
+        mCriticalPathTime = getEstimatedCostTime() + downstreamTime;
+        return mCriticalPathTime;
+    }
+
+    /**
+     * @return 该{@code Task}的预估耗时，用于计算关键路径。
+     */
+    /*package*/ long getEstimatedCostTime() {
+        return ExecuteMonitor.getEstimatedCostTime(mName);
     }
 
     /**
      * 这个函数在执行结束时被调用，及时释放占用的资源
      */
     /*package*/ void recycle() {
-        mSuccessorList.clear();
+        mProject = null;
         mTaskFinishListeners.clear();
     }
 
+    /**
+     * @return 该{@code Task}的执行记录，只在执行完成之后调用
+     */
+    /*package*/ TaskExecuteRecord createExecuteRecord() {
+        return new TaskExecuteRecord(mName, mReadyTime, mDequeueTime, mStartTime, mFinishTime, mThreadName,
+                mThreadCpuTime);
+    }
+
+    /**
+     * @return {@link #run()}返回的时间，{@link CallbackTask}之外都和执行完成的时间相同
+     */
+    /*package*/ long getRunEndTime() {
+        return mRunEndTime;
+    }
+
+    /**
+     * @return 执行完成的时间，单位纳秒，没有执行完成时为0
+     */
+    /*package*/ long getFinishTime() {
+        return mFinishTime;
+    }
+
     protected void recordTime(long costTime) {
         if (mTaskExecuteMonitor != null) {
             mTaskExecuteMonitor.record(mName, costTime);
@@ -348,11 +710,286 @@ public abstract class Task {
         mCurrentState = state;
     }
 
+    /**
+     * 切换到{@link #STATE_FINISHED}或者{@link #STATE_CANCELLED}状态，并打开等待该{@code Task}执行完成的闩锁。
+     * 执行完成、超时和取消可能同时发生，只有第一次切换生效。
+     *
+     * @return {@code true}切换成功，{@code false}已经是结束状态。
+     */
+    private boolean switchToFinished(int state, RuntimeException failure) {
+        boolean isAwaited;
+
+        synchronized (this) {
+            if (mCurrentState == STATE_FINISHED || mCurrentState == STATE_CANCELLED) {
+                return false;
+            }
+
+            mFailure = failure;
+            switchState(state);
+
+            if (mTimeoutFuture != null) {
+                mTimeoutFuture.cancel(false);
+                mTimeoutFuture = null;
+            }
+
+            isAwaited = mFinishLatch != null;
+
+            if (isAwaited) {
+                mFinishLatch.countDown();
+            }
+        }
+
+        TaskQueue helpQueue = AlphaConfig.getHelpQueue();
+        if (isAwaited && helpQueue != null) {
+            //唤醒等待该Task的同时在帮忙执行Task的线程
+            helpQueue.signalHelpers();
+        }
+
+        return true;
+    }
+
+    /**
+     * 结束该{@code Task}，并通知紧后{@code Task}，已经结束时不做任何事情。
+     *
+     * @return 需要由当前线程接着执行的紧后{@code Task}，没有则返回{@code null}
+     */
+    private Task complete(int state, RuntimeException failure, boolean allowContinuation) {
+        if (!switchToFinished(state, failure)) {
+            return null;
+        }
+
+        if (state == STATE_FINISHED) {
+            recordExecution();
+        }
+
+        Task continuation = notifyFinished(allowContinuation);
+        recycle();
+        return continuation;
+    }
+
+    /**
+     * 记录执行完成的时间，只在执行完成时调用一次。执行记录都在自己的字段中，由{@link ExecuteMonitor}在
+     * {@code Project}执行结束时统一汇总，这里不加锁也不分配内存。
+     */
+    /*package*/ void recordExecution() {
+        mFinishTime = System.nanoTime();
+        ExecuteMonitor monitor = mTaskExecuteMonitor;
+
+        if (monitor != null && monitor.isCollected()) {
+            //Project已经执行结束才执行完成，例如空闲Task，需要单独汇总
+            monitor.collect(mExecuteMonitorIndex);
+        }
+    }
+
+    private synchronized boolean switchToWaitIfIdle() {
+        if (mCurrentState != STATE_IDLE) {
+            return false;
+        }
+
+        switchState(STATE_WAIT);
+        mReadyTime = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * @return {@code true}切换到{@link #STATE_RUNNING}状态，{@code false}在等待期间被取消了。
+     */
+    private synchronized boolean switchToRunning() {
+        if (mCurrentState != STATE_WAIT) {
+            return false;
+        }
+
+        switchState(STATE_RUNNING);
+        mRunningThread = Thread.currentThread();
+
+        if (mTimeout > 0) {
+            mTimeoutFuture = AlphaConfig.getWatchdog().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout();
+                }
+            }, mTimeout, TimeUnit.NANOSECONDS);
+        }
+
+        return true;
+    }
+
+    private void onTimeout() {
+        fail(new RuntimeException("Task " + mName + " timed out after "
+                + TimeUnit.NANOSECONDS.toMillis(mTimeout) + "ms."), false);
+        interruptRunningThread();
+    }
+
+    /**
+     * 中断正在执行{@link #run()}的线程，需要在切换到结束状态之后调用。执行线程从{@link #run()}返回时会清除中断标记。
+     */
+    private synchronized void interruptRunningThread() {
+        if (mRunningThread != null) {
+            mRunningThread.interrupt();
+        }
+    }
+
+    private boolean removeFromQueue() {
+        if (mInternalRunnable == null) {
+            return false;
+        }
+
+        if (mIsInUiThread) {
+            return sMainThreadExecutor.remove(mInternalRunnable);
+        }
+
+        ExecutorService executorService = getExecutorService();
+        if (!(executorService instanceof ThreadPoolExecutor)) {
+            return false;
+        }
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+        return executor.getQueue() instanceof PriorityBlockingQueue && executor.remove(mInternalRunnable);
+    }
+
+    /**
+     * @return 是否在默认线程池的默认优先级分段中执行
+     */
+    private boolean isInDefaultExecutor() {
+        return (mExecutorName == null || AlphaConfig.EXECUTOR_CPU.equals(mExecutorName))
+                && ThreadPriority.getBand(mThreadPriority) == ThreadPriority.BAND_DEFAULT;
+    }
+
+    /**
+     * @return {@code true}切换到{@link #STATE_WAIT}状态，{@code false}已经被取消。
+     */
+    /*package*/ synchronized boolean switchToWait() {
+        if (mCurrentState == STATE_CANCELLED) {
+            return false;
+        }
+
+        if (mCurrentState != STATE_IDLE) {
+            throw new RuntimeException("You try to run task " + mName + " twice, is there a circular dependency?");
+        }
+
+        switchState(STATE_WAIT);
+        mReadyTime = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * 执行该{@code Task}，并通知紧后{@code Task}。
+     *
+     * @return 需要由当前线程接着执行的紧后{@code Task}，没有则返回{@code null}
+     */
+    private Task execute() {
+        //只有默认线程池中的Task之间才能直接接着执行，避免其他线程池的线程被占用
+        boolean allowContinuation = !mIsInUiThread && isInDefaultExecutor() && AlphaConfig.isWorkStealing();
+        mDequeueTime = System.nanoTime();
+
+        if (!switchToRunning()) {
+            //在队列中等待时被取消
+            return null;
+        }
+
+        Project project = mProject;
+        if (project != null && project.shouldSkip(mIndexInProject)) {
+            //紧前Task执行失败，跳过执行
+            return complete(STATE_CANCELLED, null, allowContinuation);
+        }
+
+        //分段线程池的线程已经是对应的优先级，只有不一致时才修改，执行完恢复，不影响这个线程之后执行的Task
+        int threadPriority = ThreadPriority.get();
+        ThreadPriority.set(mThreadPriority);
+        Throwable thrown = null;
+        long threadCpuTime = Debug.threadCpuTimeNanos();
+        mThreadName = Thread.currentThread().getName();
+        mStartTime = System.nanoTime();
+
+        try {
+            run();
+        } catch (Throwable e) {
+            //包括Error，例如延迟创建的Task类加载失败时的NoClassDefFoundError，任何失败都不能让Project无法结束
+            thrown = e;
+        } finally {
+            mRunEndTime = System.nanoTime();
+            mThreadCpuTime = threadCpuTime < 0 ? -1 : Debug.threadCpuTimeNanos() - threadCpuTime;
+            ThreadPriority.set(threadPriority);
+
+            synchronized (this) {
+                mRunningThread = null;
+            }
+
+            if (mCurrentState != STATE_RUNNING) {
+                //执行期间超时或者被取消，清除中断标记，不影响这个线程之后执行的Task
+                Thread.interrupted();
+            }
+        }
+
+        if (thrown != null) {
+            RuntimeException failure = thrown instanceof RuntimeException ? (RuntimeException) thrown
+                    : new RuntimeException("Task " + mName + " failed.", thrown);
+            Task continuation = fail(failure, allowContinuation);
+
+            if (project == null || project.getFailurePolicy() == Project.FAILURE_POLICY_THROW) {
+                //Project已经按照FAILURE_POLICY_FAIL_PROJECT结束，再抛到执行它的线程中
+                if (thrown instanceof Error) {
+                    throw (Error) thrown;
+                }
+
+                throw failure;
+            }
+
+            return continuation;
+        }
+
+        if (isCompletedByCallback()) {
+            //run()返回时还没有执行完，由回调通知完成，不再占用当前线程
+            return null;
+        }
+
+        return finish(allowContinuation);
+    }
+
 
     //==============================================================================================
     // INNER CLASSES
     //==============================================================================================
 
+    /**
+     * 在线程池或者UI线程中执行{@code Task}的{@code Runnable}，关键路径调度时线程池通过它找到对应的{@code Task}进行排序。
+     */
+    /*package*/ class InternalRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            //用循环而不是递归执行后续Task，避免长依赖链导致栈溢出
+            Task task = Task.this;
+            while (task != null) {
+                task = task.execute();
+            }
+        }
+
+        /**
+         * 同{@link #run()}，但每个{@code Task}执行完之后都检查等待的条件，满足之后把剩下的紧后{@code Task}交回线程池，
+         * 用于等待时帮忙执行{@code task}的线程，避免一条长依赖链让等待超出预期。
+         *
+         * @param latch    等待的条件
+         * @param deadline 超时的时间点，与{@link System#nanoTime()}比较
+         * @param isTimed  是否有超时
+         */
+        /*package*/ void runUntil(CountDownLatch latch, long deadline, boolean isTimed) {
+            Task task = Task.this;
+            while (task != null) {
+                task = task.execute();
+
+                if (task != null && (latch.getCount() == 0 || isTimed && deadline - System.nanoTime() <= 0)) {
+                    task.dispatch();
+                    return;
+                }
+            }
+        }
+
+        /*package*/ Task getTask() {
+            return Task.this;
+        }
+    }
+
     /**
      * 一个task完成时的回调
      */
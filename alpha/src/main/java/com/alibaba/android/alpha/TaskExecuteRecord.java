@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+/**
+ * <p>一个{@code Task}一次执行的记录，时间点都是{@link System#nanoTime()}的值，单位纳秒，只能相互比较。</p>
+ * <p>通过就绪到出队的等待时间和执行时间，可以判断一个{@code Task}慢是因为自身耗时，还是因为线程池忙在排队；
+ * 执行时间和线程CPU时间的差值则反映了执行期间等锁、IO或者没有分配到CPU的时间。</p>
+ */
+public final class TaskExecuteRecord {
+    private final String mTaskName;
+    private final long mReadyTime;
+    private final long mDequeueTime;
+    private final long mStartTime;
+    private final long mFinishTime;
+    private final String mThreadName;
+    private final long mThreadCpuTime;
+
+    /*package*/ TaskExecuteRecord(String taskName, long readyTime, long dequeueTime, long startTime, long finishTime,
+                                  String threadName, long threadCpuTime) {
+        mTaskName = taskName;
+        mReadyTime = readyTime;
+        mDequeueTime = dequeueTime;
+        mStartTime = startTime;
+        mFinishTime = finishTime;
+        mThreadName = threadName;
+        mThreadCpuTime = threadCpuTime;
+    }
+
+    /**
+     * @return {@code Task}名称
+     */
+    public String getTaskName() {
+        return mTaskName;
+    }
+
+    /**
+     * @return 紧前{@code Task}都执行完成，被提交到线程池或者UI线程的时间
+     */
+    public long getReadyTime() {
+        return mReadyTime;
+    }
+
+    /**
+     * @return 执行线程从队列中取出该{@code Task}的时间
+     */
+    public long getDequeueTime() {
+        return mDequeueTime;
+    }
+
+    /**
+     * @return 开始执行{@link Task#run()}的时间
+     */
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * @return 执行完成的时间，{@link CallbackTask}是调用{@link CallbackTask.Completion#done()}的时间
+     */
+    public long getFinishTime() {
+        return mFinishTime;
+    }
+
+    /**
+     * @return 执行{@link Task#run()}的线程名称
+     */
+    public String getThreadName() {
+        return mThreadName;
+    }
+
+    /**
+     * @return 执行{@link Task#run()}期间该线程占用的CPU时间，单位纳秒，-1表示系统不支持
+     */
+    public long getThreadCpuTime() {
+        return mThreadCpuTime;
+    }
+
+    /**
+     * @return 就绪之后在队列中等待的时间，单位纳秒
+     */
+    public long getWaitTime() {
+        return mDequeueTime - mReadyTime;
+    }
+
+    /**
+     * @return 从开始执行到执行完成的时间，单位纳秒
+     */
+    public long getRunTime() {
+        return mFinishTime - mStartTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TaskExecuteRecord ").append("name: ").append(mTaskName)
+                .append(", wait: ").append(getWaitTime()).append("ns")
+                .append(", run: ").append(getRunTime()).append("ns")
+                .append(", cpu: ").append(mThreadCpuTime).append("ns")
+                .append(", thread: ").append(mThreadName);
+        return builder.toString();
+    }
+}
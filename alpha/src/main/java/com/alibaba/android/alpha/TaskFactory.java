@@ -26,11 +26,21 @@ import java.util.Map;
 public final class TaskFactory {
     private Map<String, Task> mTasks = new HashMap<>();
     private ITaskCreator mTaskCreator;
+    private boolean mIsLazy;
 
     public TaskFactory(ITaskCreator creator) {
         mTaskCreator = creator;
     }
 
+    /**
+     * @param creator 按名称创建{@code Task}实例
+     * @param isLazy  {@code true}时只创建{@link LazyTask}，真正的{@code Task}在执行前才通过{@code creator}创建
+     */
+    /*package*/ TaskFactory(ITaskCreator creator, boolean isLazy) {
+        mTaskCreator = creator;
+        mIsLazy = isLazy;
+    }
+
     public synchronized Task getTask(String taskName) {
         Task task = mTasks.get(taskName);
 
@@ -38,7 +48,7 @@ public final class TaskFactory {
             return task;
         }
 
-        task = mTaskCreator.createTask(taskName);
+        task = mIsLazy ? new LazyTask(taskName, mTaskCreator) : mTaskCreator.createTask(taskName);
 
         if (task == null) {
             throw new IllegalArgumentException("Create task fail, there is no task corresponding to the task name. Make sure you have create a task instance in TaskCreator.");
@@ -47,4 +57,8 @@ public final class TaskFactory {
         mTasks.put(taskName, task);
         return task;
     }
+
+    /*package*/ ITaskCreator getTaskCreator() {
+        return mTaskCreator;
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link AlphaManager#require(String)}返回的句柄，用来查询或者等待对应的{@code Task}执行完成。</p>
+ * <p><strong>注意：</strong>不要在执行{@code task}的线程中等待，否则存在死锁的风险，
+ * 原因同{@link AlphaManager#waitUntilFinish()}。</p>
+ */
+public class TaskHandle {
+    private final String mTaskName;
+    private final CountDownLatch mFinishLatch;
+
+    /*package*/ TaskHandle(String taskName, CountDownLatch finishLatch) {
+        mTaskName = taskName;
+        mFinishLatch = finishLatch;
+    }
+
+    /**
+     * @return 对应的{@code Task}的名称。
+     */
+    public String getTaskName() {
+        return mTaskName;
+    }
+
+    /**
+     * @return {@code true}对应的{@code Task}已经执行完成，否则返回{@code false}。
+     */
+    public boolean isFinished() {
+        return mFinishLatch.getCount() == 0;
+    }
+
+    /**
+     * 阻塞当前线程，直到对应的{@code Task}执行完成。
+     */
+    public void await() {
+        AlphaUtils.await(mFinishLatch, 0, false);
+    }
+
+    /**
+     * 阻塞当前线程，直到对应的{@code Task}执行完成或者超时。
+     *
+     * @param timeout 最长等待时间
+     * @param unit    {@code timeout}的单位
+     * @return {@code true}对应的{@code Task}已经执行完成，{@code false}等待超时。
+     */
+    public boolean await(long timeout, TimeUnit unit) {
+        return AlphaUtils.await(mFinishLatch, System.nanoTime() + unit.toNanos(timeout), true);
+    }
+}
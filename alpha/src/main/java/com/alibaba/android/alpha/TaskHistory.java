@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>一个{@code task}在最近若干次启动中的执行时间，由{@link ExecuteHistory}读取，时间单位是纳秒，精确到微秒。</p>
+ */
+public final class TaskHistory {
+    /**
+     * 计算指数加权平均时最新一次执行时间的权重
+     */
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    private final String mTaskName;
+
+    /**
+     * 按启动的先后顺序排列
+     */
+    private final long[] mDurations;
+
+    /**
+     * 从小到大排列，用于计算分位数
+     */
+    private final long[] mSortedDurations;
+
+    /*package*/ TaskHistory(String taskName, List<Long> durations) {
+        mTaskName = taskName;
+        mDurations = new long[durations.size()];
+
+        for (int i = 0, size = durations.size(); i < size; i++) {
+            mDurations[i] = durations.get(i);
+        }
+
+        mSortedDurations = mDurations.clone();
+        Arrays.sort(mSortedDurations);
+    }
+
+    /**
+     * @return {@code task}名称
+     */
+    public String getTaskName() {
+        return mTaskName;
+    }
+
+    /**
+     * @return 有记录的启动次数
+     */
+    public int getLaunchCount() {
+        return mDurations.length;
+    }
+
+    /**
+     * @return 每次启动的执行时间，按启动的先后顺序排列，最后一个是最近一次
+     */
+    public long[] getDurations() {
+        return mDurations.clone();
+    }
+
+    /**
+     * 计算执行时间的分位数，取不小于{@code percentile}%的记录的最小值（nearest-rank），例如50是中位数，
+     * 95是p95。
+     *
+     * @param percentile 0到100之间
+     * @return 执行时间的分位数，单位纳秒
+     */
+    public long getPercentile(int percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile should be in [0, 100]: " + percentile);
+        }
+
+        int count = mSortedDurations.length;
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return mSortedDurations[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * 按执行时间的分布统计直方图，从最小值到最大值平均分成{@code bucketCount}个区间。
+     *
+     * @param bucketCount 区间的数量
+     * @return 每个区间中的启动次数
+     */
+    public int[] getHistogram(int bucketCount) {
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketCount should be positive: " + bucketCount);
+        }
+
+        int[] buckets = new int[bucketCount];
+        long min = mSortedDurations[0];
+        long range = mSortedDurations[mSortedDurations.length - 1] - min + 1;
+
+        for (long duration : mSortedDurations) {
+            buckets[(int) ((duration - min) * bucketCount / range)]++;
+        }
+
+        return buckets;
+    }
+
+    /**
+     * 按启动的先后顺序计算执行时间的指数加权平均，越近的启动权重越大，单次启动的波动不会让结果大幅变化。
+     *
+     * @return 平滑后的执行时间，单位纳秒
+     */
+    public long getSmoothedDuration() {
+        long smoothed = mDurations[0];
+
+        for (int i = 1; i < mDurations.length; i++) {
+            smoothed = smooth(smoothed, mDurations[i]);
+        }
+
+        return smoothed;
+    }
+
+    /**
+     * @param smoothed 之前的指数加权平均
+     * @param duration 最新一次的执行时间
+     * @return 加入最新一次执行时间之后的指数加权平均
+     */
+    /*package*/ static long smooth(long smoothed, long duration) {
+        return Math.round(smoothed + SMOOTHING_FACTOR * (duration - smoothed));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TaskHistory ").append("name: ").append(mTaskName)
+                .append(", launches: ").append(mDurations.length)
+                .append(", p50: ").append(getPercentile(50)).append("ns")
+                .append(", p95: ").append(getPercentile(95)).append("ns")
+                .append(", p99: ").append(getPercentile(99)).append("ns");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>默认线程池的缓存队列。</p>
+ * <p>除了线程池的线程之外，等待{@code task}执行完成的线程也可以通过{@link #helpUntil(CountDownLatch, long, boolean)}
+ * 从这个队列中取出就绪的{@code task}直接执行，直到等待的条件满足，参见{@link AlphaConfig#setHelpWhileWaiting(boolean)}。
+ * 有新的{@code task}入队或者有被等待的{@code task}执行完成时，会唤醒这些等待的线程。</p>
+ */
+/*package*/ final class TaskQueue extends PriorityBlockingQueue<Runnable> {
+    private final Object mHelperLock = new Object();
+    private final AtomicInteger mHelperCount = new AtomicInteger();
+
+    /*package*/ TaskQueue(Comparator<Runnable> comparator) {
+        super(11, comparator);
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        boolean result = super.offer(runnable);
+        signalHelpers();
+        return result;
+    }
+
+    /**
+     * 唤醒在{@link #helpUntil(CountDownLatch, long, boolean)}中等待的线程，没有等待的线程时不做任何事情。
+     */
+    /*package*/ void signalHelpers() {
+        if (mHelperCount.get() > 0) {
+            synchronized (mHelperLock) {
+                mHelperLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 在{@code latch}打开之前，不断从队列中取出{@code task}在当前线程执行；队列为空时等待新的{@code task}入队或者
+     * {@code latch}打开。{@code task}执行完会自己恢复线程优先级。
+     *
+     * @param latch    等待的条件
+     * @param deadline 超时的时间点，与{@link System#nanoTime()}比较
+     * @param isTimed  是否有超时
+     * @return {@code true}条件已经满足，{@code false}等待超时。
+     */
+    /*package*/ boolean helpUntil(CountDownLatch latch, long deadline, boolean isTimed) {
+        mHelperCount.incrementAndGet();
+
+        try {
+            while (latch.getCount() > 0) {
+                Runnable runnable = poll();
+
+                if (runnable instanceof Task.InternalRunnable) {
+                    ((Task.InternalRunnable) runnable).runUntil(latch, deadline, isTimed);
+                    continue;
+                } else if (runnable != null) {
+                    runnable.run();
+                    continue;
+                }
+
+                synchronized (mHelperLock) {
+                    //持有锁再检查一次，入队和latch打开后的唤醒都需要这把锁，不会错过
+                    if (latch.getCount() == 0 || !isEmpty()) {
+                        continue;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (isTimed && remaining <= 0) {
+                        return false;
+                    }
+
+                    try {
+                        if (isTimed) {
+                            TimeUnit.NANOSECONDS.timedWait(mHelperLock, remaining);
+                        } else {
+                            mHelperLock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        AlphaLog.w(e);
+                    }
+                }
+            }
+
+            return true;
+        } finally {
+            mHelperCount.decrementAndGet();
+        }
+    }
+}
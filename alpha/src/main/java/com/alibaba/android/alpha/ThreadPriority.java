@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+/**
+ * <p>读写当前线程的优先级，{@code Task}执行前后通过它调整和恢复所在线程的优先级。</p>
+ * <p>每个线程当前的优先级缓存在{@link ThreadLocal}中，只有优先级确实变化时才调用系统接口。优先级分段线程池的线程在创建时
+ * 就设置好分段的优先级，执行同一分段的{@code Task}时不需要再修改。实际的读写由{@link Backend}完成，默认是
+ * {@link android.os.Process}，可以替换成纯Java的实现，在JVM上验证调度逻辑。</p>
+ * <strong>注意：</strong>绕过这个类直接调用{@link android.os.Process#setThreadPriority(int)}会使缓存失效。
+ */
+/*package*/ final class ThreadPriority {
+
+    /**
+     * 前台分段，优先级高于{@link android.os.Process#THREAD_PRIORITY_DEFAULT}的{@code Task}在这个分段的线程中执行
+     */
+    /*package*/ static final int BAND_FOREGROUND = android.os.Process.THREAD_PRIORITY_FOREGROUND;
+
+    /**
+     * 默认分段
+     */
+    /*package*/ static final int BAND_DEFAULT = android.os.Process.THREAD_PRIORITY_DEFAULT;
+
+    /**
+     * 后台分段，优先级不高于{@link android.os.Process#THREAD_PRIORITY_BACKGROUND}的{@code Task}在这个分段的线程中执行
+     */
+    /*package*/ static final int BAND_BACKGROUND = android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+    private static volatile Backend sBackend = new ProcessBackend();
+
+    private static final ThreadLocal<int[]> sCurrentPriority = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[]{sBackend.getThreadPriority()};
+        }
+    };
+
+    private ThreadPriority() {
+    }
+
+    /**
+     * @return 当前线程的优先级
+     */
+    /*package*/ static int get() {
+        return sCurrentPriority.get()[0];
+    }
+
+    /**
+     * 设置当前线程的优先级，和当前优先级相同时不做任何事情。
+     *
+     * @param priority 线程优先级，对应的是{@link android.os.Process}里面的定义
+     */
+    /*package*/ static void set(int priority) {
+        int[] currentPriority = sCurrentPriority.get();
+
+        if (currentPriority[0] != priority) {
+            sBackend.setThreadPriority(priority);
+            currentPriority[0] = priority;
+        }
+    }
+
+    /**
+     * @param priority 线程优先级
+     * @return 该优先级所在的分段，{@link #BAND_FOREGROUND}、{@link #BAND_DEFAULT}或者{@link #BAND_BACKGROUND}
+     */
+    /*package*/ static int getBand(int priority) {
+        if (priority < BAND_DEFAULT) {
+            return BAND_FOREGROUND;
+        } else if (priority >= BAND_BACKGROUND) {
+            return BAND_BACKGROUND;
+        } else {
+            return BAND_DEFAULT;
+        }
+    }
+
+    /**
+     * 替换读写线程优先级的实现，需要在任何线程读取优先级之前调用。
+     */
+    /*package*/ static void setBackend(Backend backend) {
+        sBackend = backend;
+    }
+
+    /**
+     * 读写当前线程优先级的实现
+     */
+    /*package*/ interface Backend {
+        int getThreadPriority();
+
+        void setThreadPriority(int priority);
+    }
+
+    private static class ProcessBackend implements Backend {
+
+        @Override
+        public int getThreadPriority() {
+            return android.os.Process.getThreadPriority(android.os.Process.myTid());
+        }
+
+        @Override
+        public void setThreadPriority(int priority) {
+            android.os.Process.setThreadPriority(priority);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>把一次{@code Project}执行导出为Chrome Trace Event格式的JSON文件，可以直接用Perfetto（ui.perfetto.dev）或者
+ * chrome://tracing打开。</p>
+ * <p>每个执行线程一条泳道，{@code Task}是其中的完整事件，锚点是瞬时事件；每个{@code Project}（包括嵌套的）单独一条
+ * 泳道，显示从开始锚点到结束锚点的区间；紧前{@code Task}到紧后{@code Task}之间用流事件连接，经过锚点的依赖
+ * 会连接到锚点之前的{@code Task}。</p>
+ * <p>构造时在{@code Project}结束的线程中复制执行记录，{@link #run()}在后台线程中边生成边写文件。</p>
+ */
+/*package*/ final class TraceWriter implements Runnable {
+    private static final int PID = 1;
+
+    /**
+     * {@code Project}泳道的起始编号，和执行线程的泳道区分开
+     */
+    private static final int PROJECT_TID_BASE = 100000;
+
+    private final File mFile;
+    private final String mProjectName;
+    private final ExecutionGraph mGraph;
+    private final TaskExecuteRecord[] mRecords;
+    private final long[] mRunEndTimes;
+    private final boolean[] mIsAnchors;
+    private final int[] mOwners;
+    private final String[] mProjectNames;
+    private final long[] mProjectStartTimes;
+    private final long[] mProjectFinishTimes;
+    private final long mBaseTime;
+    private final Map<String, Integer> mThreadIds = new HashMap<String, Integer>();
+
+    private Writer mWriter;
+    private boolean mIsFirstEvent;
+
+    /**
+     * @param project 执行完成的{@code Project}
+     * @param graph   {@code project}的执行图
+     * @param file    输出的文件
+     */
+    /*package*/ TraceWriter(Project project, ExecutionGraph graph, File file) {
+        int count = graph.getTaskCount();
+        Map<Project, Integer> projectIndexes = new IdentityHashMap<Project, Integer>();
+
+        mFile = file;
+        mProjectName = project.mName;
+        mGraph = graph;
+        mRecords = new TaskExecuteRecord[count];
+        mRunEndTimes = new long[count];
+        mIsAnchors = new boolean[count];
+        mOwners = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            Task task = graph.getTask(i);
+            Project owner = graph.getOwner(i);
+            Integer ownerIndex = projectIndexes.get(owner);
+
+            if (ownerIndex == null) {
+                ownerIndex = projectIndexes.size();
+                projectIndexes.put(owner, ownerIndex);
+            }
+
+            mOwners[i] = ownerIndex;
+            mIsAnchors[i] = task.shouldRunInline();
+
+            //没有执行完的不导出，包括被取消的和还没有执行的空闲Task。结束锚点正在执行，它回调了onProjectFinish()
+            if (task.isFinished() || i == ExecutionGraph.FINISH_INDEX && task.isRunning()) {
+                mRecords[i] = task.createExecuteRecord();
+                mRunEndTimes[i] = task.getRunEndTime();
+            }
+        }
+
+        mProjectNames = new String[projectIndexes.size()];
+        for (Map.Entry<Project, Integer> entry : projectIndexes.entrySet()) {
+            mProjectNames[entry.getValue()] = entry.getKey().mName;
+        }
+
+        //开始锚点属于Project本身，嵌套Project的结束锚点在执行图中属于外层Project，通过getFinishedTask()找到
+        mProjectStartTimes = new long[mProjectNames.length];
+        mProjectFinishTimes = new long[mProjectNames.length];
+
+        for (int i = 0; i < count; i++) {
+            TaskExecuteRecord record = mRecords[i];
+
+            if (record == null || !mIsAnchors[i]) {
+                continue;
+            }
+
+            Task finishedTask = graph.getFinishedTask(i);
+            Integer finishedProject = finishedTask instanceof Project ? projectIndexes.get(finishedTask) : null;
+
+            if (finishedProject != null) {
+                mOwners[i] = finishedProject;
+                mProjectFinishTimes[finishedProject] = record.getStartTime();
+            } else if (i == ExecutionGraph.FINISH_INDEX) {
+                mProjectFinishTimes[mOwners[i]] = record.getStartTime();
+            } else {
+                mProjectStartTimes[mOwners[i]] = record.getStartTime();
+            }
+        }
+
+        TaskExecuteRecord start = mRecords[ExecutionGraph.START_INDEX];
+        mBaseTime = start != null ? start.getStartTime() : 0;
+    }
+
+    @Override
+    public void run() {
+        try {
+            File parent = mFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mFile), "UTF-8"));
+            mIsFirstEvent = true;
+            mWriter.write("{\"traceEvents\":[");
+            writeMetadata("process_name", 0, "Alpha " + mProjectName);
+            writeThreads();
+            writeProjects();
+            writeTasks();
+            writeDependencies();
+            mWriter.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+            mWriter.flush();
+        } catch (IOException e) {
+            AlphaLog.w(e);
+        } finally {
+            AlphaUtils.closeSafely(mWriter);
+            mWriter = null;
+        }
+    }
+
+
+    //==============================================================================================
+    // PRIVATE METHOD
+    //==============================================================================================
+
+    /**
+     * 给每个执行线程分配一条泳道
+     */
+    private void writeThreads() throws IOException {
+        for (TaskExecuteRecord record : mRecords) {
+            if (record != null && !mThreadIds.containsKey(record.getThreadName())) {
+                int tid = mThreadIds.size() + 1;
+                mThreadIds.put(record.getThreadName(), tid);
+                writeMetadata("thread_name", tid, record.getThreadName());
+            }
+        }
+    }
+
+    /**
+     * 每个{@code Project}一条泳道，显示开始锚点到结束锚点的区间
+     */
+    private void writeProjects() throws IOException {
+        for (int i = 0, count = mProjectNames.length; i < count; i++) {
+            int tid = PROJECT_TID_BASE + i;
+            writeMetadata("thread_name", tid, "Project " + mProjectNames[i]);
+
+            //被取消或者还没有执行完的Project不导出区间
+            if (mProjectStartTimes[i] != 0 && mProjectFinishTimes[i] != 0) {
+                beginEvent(mProjectNames[i], "project", "X", tid, mProjectStartTimes[i]);
+                mWriter.write(",\"dur\":");
+                writeMicros(mProjectFinishTimes[i] - mProjectStartTimes[i]);
+                mWriter.write('}');
+            }
+        }
+    }
+
+    private void writeTasks() throws IOException {
+        for (int i = 0, count = mRecords.length; i < count; i++) {
+            TaskExecuteRecord record = mRecords[i];
+
+            if (record == null) {
+                continue;
+            }
+
+            int tid = mThreadIds.get(record.getThreadName());
+            String project = mProjectNames[mOwners[i]];
+
+            if (mIsAnchors[i]) {
+                beginEvent(record.getTaskName(), "anchor", "i", tid, record.getStartTime());
+                mWriter.write(",\"s\":\"t\",\"args\":{\"project\":");
+                writeString(project);
+                mWriter.write("}}");
+                continue;
+            }
+
+            //CallbackTask在run()返回后不再占用线程，线程泳道上只显示run()的区间，完整的耗时放在参数中
+            beginEvent(record.getTaskName(), "task", "X", tid, record.getStartTime());
+            mWriter.write(",\"dur\":");
+            writeMicros(mRunEndTimes[i] - record.getStartTime());
+            mWriter.write(",\"args\":{\"project\":");
+            writeString(project);
+            mWriter.write(",\"wait_us\":");
+            writeMicros(record.getWaitTime());
+            mWriter.write(",\"run_us\":");
+            writeMicros(record.getRunTime());
+            if (record.getThreadCpuTime() >= 0) {
+                mWriter.write(",\"cpu_us\":");
+                writeMicros(record.getThreadCpuTime());
+            }
+            mWriter.write("}}");
+        }
+    }
+
+    /**
+     * 用流事件连接每个{@code Task}和它的紧前{@code Task}，紧前是锚点时继续向前找到实际的{@code Task}。
+     */
+    private void writeDependencies() throws IOException {
+        int count = mRecords.length;
+        int[] visited = new int[count];
+        int[] stack = new int[count];
+        int flowId = 0;
+
+        for (int i = 0; i < count; i++) {
+            TaskExecuteRecord record = mRecords[i];
+
+            if (record == null || mIsAnchors[i]) {
+                continue;
+            }
+
+            //visited中记录的是i + 1，每个Task的遍历互不影响，不需要清空
+            int mark = i + 1;
+            int top = 0;
+            stack[top++] = i;
+
+            while (top > 0) {
+                int index = stack[--top];
+
+                for (int j = mGraph.getPredecessorStart(index), end = mGraph.getPredecessorEnd(index); j < end; j++) {
+                    int predecessor = mGraph.getPredecessor(j);
+
+                    if (visited[predecessor] == mark) {
+                        continue;
+                    }
+
+                    visited[predecessor] = mark;
+
+                    if (mIsAnchors[predecessor]) {
+                        stack[top++] = predecessor;
+                    } else if (mRecords[predecessor] != null) {
+                        writeFlow(++flowId, predecessor, i);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeFlow(int id, int from, int to) throws IOException {
+        TaskExecuteRecord fromRecord = mRecords[from];
+        TaskExecuteRecord toRecord = mRecords[to];
+
+        //流事件的起点要落在紧前Task的区间内
+        long fromTime = Math.max(fromRecord.getStartTime(), mRunEndTimes[from] - 1);
+        beginEvent("dependency", "dependency", "s", mThreadIds.get(fromRecord.getThreadName()), fromTime);
+        mWriter.write(",\"id\":");
+        mWriter.write(Integer.toString(id));
+        mWriter.write('}');
+
+        beginEvent("dependency", "dependency", "f", mThreadIds.get(toRecord.getThreadName()), toRecord.getStartTime());
+        mWriter.write(",\"bp\":\"e\",\"id\":");
+        mWriter.write(Integer.toString(id));
+        mWriter.write('}');
+    }
+
+    private void writeMetadata(String name, int tid, String value) throws IOException {
+        nextEvent();
+        mWriter.write("{\"name\":\"");
+        mWriter.write(name);
+        mWriter.write("\",\"ph\":\"M\",\"pid\":");
+        mWriter.write(Integer.toString(PID));
+        mWriter.write(",\"tid\":");
+        mWriter.write(Integer.toString(tid));
+        mWriter.write(",\"args\":{\"name\":");
+        writeString(value);
+        mWriter.write("}}");
+    }
+
+    /**
+     * 写出事件的公共字段，调用者继续写其余字段并以'}'结束。
+     */
+    private void beginEvent(String name, String category, String phase, int tid, long time) throws IOException {
+        nextEvent();
+        mWriter.write("{\"name\":");
+        writeString(name);
+        mWriter.write(",\"cat\":\"");
+        mWriter.write(category);
+        mWriter.write("\",\"ph\":\"");
+        mWriter.write(phase);
+        mWriter.write("\",\"pid\":");
+        mWriter.write(Integer.toString(PID));
+        mWriter.write(",\"tid\":");
+        mWriter.write(Integer.toString(tid));
+        mWriter.write(",\"ts\":");
+        writeMicros(time - mBaseTime);
+    }
+
+    private void nextEvent() throws IOException {
+        if (mIsFirstEvent) {
+            mIsFirstEvent = false;
+            mWriter.write('\n');
+        } else {
+            mWriter.write(",\n");
+        }
+    }
+
+    /**
+     * 以微秒为单位写出纳秒时间，保留3位小数，不受默认{@code Locale}的影响。
+     */
+    private void writeMicros(long nanos) throws IOException {
+        if (nanos < 0) {
+            mWriter.write('-');
+            nanos = -nanos;
+        }
+
+        long fraction = nanos % 1000;
+        mWriter.write(Long.toString(nanos / 1000));
+        mWriter.write('.');
+        mWriter.write(fraction < 10 ? "00" : fraction < 100 ? "0" : "");
+        mWriter.write(Long.toString(fraction));
+    }
+
+    private void writeString(String value) throws IOException {
+        mWriter.write('"');
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                mWriter.write('\\');
+                mWriter.write(c);
+            } else if (c < 0x20) {
+                mWriter.write(String.format("\\u%04x", (int) c));
+            } else {
+                mWriter.write(c);
+            }
+        }
+
+        mWriter.write('"');
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>工作窃取模式的默认线程池。</p>
+ * <p>{@link ForkJoinPool}在Android 5.0才加入，单独放在这个类中，只有在5.0及以上才会加载，
+ * 低版本的虚拟机校验{@link AlphaConfig}时不会遇到这个类。</p>
+ * <p>Android使用的JSR166版本的{@link ForkJoinPool}中，即使在工作线程内调用{@link #execute(Runnable)}，任务也会放入
+ * 共享的提交队列，而不是当前线程自己的队列。这里在工作线程内改为通过{@link ForkJoinTask#fork()}提交，
+ * 就绪的紧后{@code task}一定放入当前线程自己的队列，其他线程空闲时再来窃取。</p>
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+final class WorkStealingExecutor extends ForkJoinPool {
+
+    private WorkStealingExecutor(int threadNum, ForkJoinWorkerThreadFactory factory) {
+        //task不会被join，使用asyncMode让每个线程按照FIFO的顺序处理自己的队列
+        super(threadNum, factory, null, true);
+    }
+
+    /**
+     * @param threadNum 线程数
+     * @return 工作窃取模式的线程池
+     */
+    /*package*/ static ExecutorService create(int threadNum) {
+        ForkJoinWorkerThreadFactory factory = new ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Alpha Thread #" + mCount.getAndIncrement());
+                return thread;
+            }
+        };
+
+        return new WorkStealingExecutor(threadNum, factory);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Thread thread = Thread.currentThread();
+
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == this) {
+            new RunnableTask(task).fork();
+        } else {
+            super.execute(task);
+        }
+    }
+
+    /**
+     * 在工作线程的队列中执行{@code Runnable}。{@link ForkJoinTask}会吞掉执行时抛出的异常，这里交给线程的
+     * {@link Thread.UncaughtExceptionHandler}处理，和{@link ForkJoinPool#execute(Runnable)}的行为保持一致。
+     */
+    private static final class RunnableTask extends ForkJoinTask<Void> {
+        private final Runnable mRunnable;
+
+        RunnableTask(Runnable runnable) {
+            mRunnable = runnable;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(Void value) {
+        }
+
+        @Override
+        protected boolean exec() {
+            try {
+                mRunnable.run();
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExecuteHistoryTest {
+    private static final int MAGIC = 0x414c5048;
+    private static final int VERSION = 1;
+    private static final int MAX_LAUNCHES = 3;
+    private static final long WAIT_TIMEOUT = 5000;
+
+    private File mFile;
+    private File mOldFile;
+    private ExecuteHistory mHistory;
+
+    @Before
+    public void setUp() throws IOException {
+        AlphaConfig.setLoggable(false);
+        mFile = File.createTempFile("alpha_history", null);
+        mOldFile = new File(mFile.getPath() + ".old");
+        mHistory = new ExecuteHistory(mFile, MAX_LAUNCHES);
+        mHistory.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mHistory.clear();
+    }
+
+    /**
+     * 两个进程共用一个文件时，记录按A、B、A的顺序穿插，A的两条记录合并为一次启动，之后的记录不会被丢弃。
+     */
+    @Test
+    public void testInterleavedLaunches() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        writeRecord(out, 1, "main", 100);
+        writeRecord(out, 2, "secondary", 200);
+        writeRecord(out, 1, "mainIdle", 300);
+        writeRecord(out, 3, "main", 400);
+        out.close();
+
+        Map<String, TaskHistory> histories = mHistory.getTaskHistories();
+
+        assertEquals(3, histories.size());
+        assertEquals(2, histories.get("main").getLaunchCount());
+        assertEquals(1, histories.get("secondary").getLaunchCount());
+        assertNotNull(histories.get("mainIdle"));
+    }
+
+    /**
+     * 写了一半的记录以及无法识别的内容之后追加的记录仍然可以读到。
+     */
+    @Test
+    public void testBrokenRecordsSkipped() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        writeRecord(out, 1, "first", 100);
+        writeTornRecord(out, 2);
+        writeRecord(out, 3, "afterTorn", 200);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        writeRecord(out, 4, "afterGarbage", 300);
+        writeTornRecord(out, 5);
+        out.close();
+
+        Map<String, TaskHistory> histories = mHistory.getTaskHistories();
+
+        assertEquals(3, histories.size());
+        assertNotNull(histories.get("first"));
+        assertNotNull(histories.get("afterTorn"));
+        assertNotNull(histories.get("afterGarbage"));
+    }
+
+    /**
+     * 文件中已经有{@code maxLaunches}次启动时，本次启动的第一条记录写入前改名为旧文件，之后的记录追加到新文件。
+     * 文件中有损坏的记录也不影响启动次数的统计。
+     */
+    @Test(timeout = 10000)
+    public void testRotation() throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        writeRecord(out, 1, "launch1", 100);
+        writeTornRecord(out, 2);
+        writeRecord(out, 3, "launch3", 100);
+        writeRecord(out, 4, "launch4", 100);
+        out.close();
+
+        long oldLength = mFile.length();
+        mHistory.append(Collections.singletonList(createRecord("current")));
+        waitForLength(mOldFile, oldLength);
+        waitForLength(mFile, 1);
+
+        assertEquals(oldLength, mOldFile.length());
+        long length = mFile.length();
+
+        mHistory.append(Collections.singletonList(createRecord("currentIdle")));
+        waitForLength(mFile, length + 1);
+
+        assertEquals(oldLength, mOldFile.length());
+
+        //合并两个文件后取最近的3次启动
+        Map<String, TaskHistory> histories = mHistory.getTaskHistories();
+        assertNull(histories.get("launch1"));
+        assertNotNull(histories.get("launch3"));
+        assertNotNull(histories.get("launch4"));
+        assertNotNull(histories.get("current"));
+        assertNotNull(histories.get("currentIdle"));
+    }
+
+    private TaskExecuteRecord createRecord(String taskName) {
+        return new TaskExecuteRecord(taskName, 0, 0, 0, 1000, "thread", 0);
+    }
+
+    /**
+     * 追加在IO线程中进行，等到文件长度达到{@code minLength}。
+     */
+    private void waitForLength(File file, long minLength) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+
+        while (file.length() < minLength && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(file + " is not written", file.length() >= minLength);
+    }
+
+    /**
+     * 进程在写文件时被杀，只写了一部分的记录：第二个名称只写了长度，紧接着追加的记录开头会被当成这个名称读取。
+     */
+    private void writeTornRecord(DataOutputStream out, long launchId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(launchId);
+        out.writeInt(2);
+        out.writeUTF("torn");
+        out.writeInt(100);
+        out.writeShort(4);
+    }
+
+    private void writeRecord(DataOutputStream out, long launchId, String taskName, int runTimeMicros)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(launchId);
+        out.writeInt(1);
+        out.writeUTF(taskName);
+        out.writeInt(runTimeMicros);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExecuteMonitorTest {
+    private static final int TASK_COUNT = 10000;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final String EXECUTOR_NAME = "ExecuteMonitorTest";
+
+    /**
+     * 整个测试允许的分配量，留给计数本身以及JIT等的偶发分配，远小于每次执行完成分配一个对象的量
+     */
+    private static final long ALLOCATION_TOLERANCE = 4096;
+
+    private final QueueExecutor mExecutor = new QueueExecutor();
+    private final AtomicInteger mProjectListenerCount = new AtomicInteger();
+    private final AtomicInteger mTaskListenerCount = new AtomicInteger();
+
+    private final OnProjectExecuteListener mProjectListener = new OnProjectExecuteListener() {
+        @Override
+        public void onProjectStart() {
+        }
+
+        @Override
+        public void onTaskFinish(String taskName) {
+            mProjectListenerCount.incrementAndGet();
+        }
+
+        @Override
+        public void onProjectFinish() {
+        }
+    };
+
+    private final Task.OnTaskFinishListener mTaskListener = new Task.OnTaskFinishListener() {
+        @Override
+        public void onTaskFinish(String taskName) {
+            mTaskListenerCount.incrementAndGet();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        //打开日志时执行完成的路径上也不能有格式化日志的分配
+        AlphaConfig.setLoggable(true);
+        AlphaConfig.registerExecutor(EXECUTOR_NAME, mExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        AlphaConfig.setLoggable(false);
+    }
+
+    /**
+     * 在已经启动的{@code Project}中逐个执行{@code Task}，包括切换到完成状态、记录执行时间、回调监听以及紧后计数器
+     * 递减，整个过程不分配内存。{@code Task}由测试线程从队列中取出执行，分配量只统计这一个线程。
+     */
+    @Test
+    public void testTaskCompletionDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        //预热，避免把首次执行时的类加载和编译算进去
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            completeTasks(threadBean);
+        }
+
+        long allocatedBytes = completeTasks(threadBean);
+        assertTrue("task completion allocated " + allocatedBytes + " bytes for " + (TASK_COUNT - 1) + " tasks",
+                allocatedBytes < ALLOCATION_TOLERANCE);
+    }
+
+    /**
+     * @return 执行除最后一个以外的所有{@code Task}分配的字节数，最后一个{@code Task}会触发结束锚点汇总执行记录，不计入
+     */
+    private long completeTasks(com.sun.management.ThreadMXBean threadBean) {
+        Project.Builder builder = new Project.Builder();
+        builder.setOnProjectExecuteListener(mProjectListener);
+
+        for (int i = 0; i < TASK_COUNT; i++) {
+            Task task = new Task("task" + i) {
+                @Override
+                public void run() {
+                }
+            };
+            task.setExecutorName(EXECUTOR_NAME);
+            task.addOnTaskFinishListener(mTaskListener);
+            builder.add(task);
+        }
+
+        Project project = builder.create();
+        mProjectListenerCount.set(0);
+        mTaskListenerCount.set(0);
+        project.start();
+        assertEquals(TASK_COUNT, mExecutor.size());
+
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < TASK_COUNT - 1; i++) {
+            mExecutor.runNext();
+        }
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+        mExecutor.runNext();
+        assertTrue(project.isFinished());
+        assertEquals(TASK_COUNT, mProjectListenerCount.get());
+        assertEquals(TASK_COUNT, mTaskListenerCount.get());
+        return allocatedBytes;
+    }
+
+    /**
+     * 只把{@code Task}放入队列，由测试线程调用{@link #runNext()}执行。
+     */
+    private static class QueueExecutor extends AbstractExecutorService {
+        private final ArrayDeque<Runnable> mQueue = new ArrayDeque<Runnable>(TASK_COUNT * 2);
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        synchronized int size() {
+            return mQueue.size();
+        }
+
+        void runNext() {
+            Runnable command;
+            synchronized (this) {
+                command = mQueue.poll();
+            }
+
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
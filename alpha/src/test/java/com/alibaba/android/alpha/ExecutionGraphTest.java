@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutionGraphTest {
+    private static final int LARGE_TASK_COUNT = 1000;
+    private static final int LARGE_EDGES_PER_TASK = 3;
+    private static final int TIMING_ROUNDS = 20;
+
+    /**
+     * 校验（拓扑排序）的耗时最多占{@link Project.Builder#create()}的几分之一
+     */
+    private static final int MIN_CREATE_TO_VALIDATE_RATIO = 10;
+
+    private final List<String> mExecuteOrder = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ITaskCreator mCreator = new ITaskCreator() {
+        @Override
+        public Task createTask(final String taskName) {
+            return new Task(taskName) {
+                @Override
+                public void run() {
+                    mExecuteOrder.add(taskName);
+                }
+            };
+        }
+    };
+
+    @Before
+    public void setUp() {
+        AlphaConfig.setLoggable(false);
+    }
+
+    @Test
+    public void testCyclePathInMessage() {
+        //E -> A -> B -> C -> A，D在C之后，只有A、B、C在环上
+        Project.Builder builder = new Project.Builder().withTaskCreator(mCreator);
+        builder.setProjectName("cycle");
+        builder.add("E");
+        builder.add("A").after("E", "C");
+        builder.add("B").after("A");
+        builder.add("C").after("B");
+        builder.add("D").after("C");
+
+        try {
+            builder.create();
+            fail("circular dependency not detected");
+        } catch (RuntimeException e) {
+            String message = e.getMessage();
+            assertTrue(message, message.startsWith("Circular dependency in project cycle: "));
+
+            String path = message.substring(message.indexOf(": ") + 2);
+            List<String> rotations = Arrays.asList("A -> B -> C -> A", "B -> C -> A -> B", "C -> A -> B -> C");
+            assertTrue(path, rotations.contains(path));
+        }
+    }
+
+    /**
+     * 1000个{@code Task}、约3000条随机依赖的图，单独统计校验（{@link ExecutionGraph#sortTopologically(String)}）的耗时，
+     * 它应该只占{@link Project.Builder#create()}的一小部分，并检查执行顺序满足所有依赖。
+     */
+    @Test(timeout = 60000)
+    public void testValidateThousandTasks() throws Exception {
+        Map<String, List<String>> predecessors = new HashMap<String, List<String>>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < LARGE_TASK_COUNT; i++) {
+            List<String> names = new ArrayList<String>();
+            for (int j = 0; j < LARGE_EDGES_PER_TASK && i > 0; j++) {
+                String name = "t" + random.nextInt(i);
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+            }
+
+            predecessors.put("t" + i, names);
+        }
+
+        Project project = null;
+        long createTime = 0;
+
+        //前一半用于预热
+        for (int round = 0; round < TIMING_ROUNDS * 2; round++) {
+            long startTime = System.nanoTime();
+            project = buildProject(predecessors);
+            if (round >= TIMING_ROUNDS) {
+                createTime += System.nanoTime() - startTime;
+            }
+        }
+
+        ExecutionGraph graph = project.getGraph();
+        long validateTime = 0;
+
+        for (int round = 0; round < TIMING_ROUNDS * 2; round++) {
+            long startTime = System.nanoTime();
+            graph.sortTopologically(project.mName);
+            if (round >= TIMING_ROUNDS) {
+                validateTime += System.nanoTime() - startTime;
+            }
+        }
+
+        assertTrue("validation took " + validateTime + "ns, create() took " + createTime + "ns",
+                validateTime * MIN_CREATE_TO_VALIDATE_RATIO <= createTime);
+
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+        project.addOnProjectExecuteListener(new OnProjectExecuteListener() {
+            @Override
+            public void onProjectStart() {
+            }
+
+            @Override
+            public void onTaskFinish(String taskName) {
+            }
+
+            @Override
+            public void onProjectFinish() {
+                finishLatch.countDown();
+            }
+        });
+        project.start();
+        assertTrue(finishLatch.await(30, TimeUnit.SECONDS));
+
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        for (String name : mExecuteOrder) {
+            positions.put(name, positions.size());
+        }
+
+        assertEquals(LARGE_TASK_COUNT, positions.size());
+        for (Map.Entry<String, List<String>> entry : predecessors.entrySet()) {
+            for (String predecessor : entry.getValue()) {
+                assertTrue(predecessor + " should run before " + entry.getKey(),
+                        positions.get(predecessor) < positions.get(entry.getKey()));
+            }
+        }
+    }
+
+    private Project buildProject(Map<String, List<String>> predecessors) {
+        Project.Builder builder = new Project.Builder().withTaskCreator(mCreator);
+
+        for (int i = 0; i < LARGE_TASK_COUNT; i++) {
+            List<String> names = predecessors.get("t" + i);
+            builder.add("t" + i);
+            if (!names.isEmpty()) {
+                builder.after(names.toArray(new String[names.size()]));
+            }
+        }
+
+        return builder.create();
+    }
+}
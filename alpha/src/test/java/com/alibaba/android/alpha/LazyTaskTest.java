@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LazyTaskTest {
+    private static final String REJECTED = "rejected";
+    private static final String SUCCESSOR = "successor";
+
+    private final AtomicInteger mSuccessorRunCount = new AtomicInteger();
+    private final Throwable[] mUncaught = new Throwable[1];
+    private Thread.UncaughtExceptionHandler mHandler;
+
+    @Before
+    public void setUp() {
+        AlphaConfig.setLoggable(false);
+        mHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                mUncaught[0] = e;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Thread.setDefaultUncaughtExceptionHandler(mHandler);
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectProject() throws Exception {
+        assertRejected(new Project.Builder().add(new Task("inner") {
+            @Override
+            public void run() {
+            }
+        }).create());
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectCallbackTask() throws Exception {
+        assertRejected(new CallbackTask(REJECTED) {
+            @Override
+            public void run(Completion completion) {
+                completion.done();
+            }
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectUiThreadTask() throws Exception {
+        assertRejected(new Task(REJECTED, true) {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * 不能延迟创建的{@code Task}按照默认的失败策略执行失败，{@code Project}仍然会结束，紧后{@code Task}不会执行，
+     * 异常也不会抛到执行线程中。
+     */
+    private void assertRejected(final Task created) throws Exception {
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+        Project project = new Project.Builder()
+                .withTaskCreator(new ITaskCreator() {
+                    @Override
+                    public Task createTask(String taskName) {
+                        if (REJECTED.equals(taskName)) {
+                            return created;
+                        }
+
+                        return new Task(taskName) {
+                            @Override
+                            public void run() {
+                                mSuccessorRunCount.incrementAndGet();
+                            }
+                        };
+                    }
+                }, true)
+                .setOnProjectExecuteListener(new OnProjectExecuteListener() {
+                    @Override
+                    public void onProjectStart() {
+                    }
+
+                    @Override
+                    public void onTaskFinish(String taskName) {
+                    }
+
+                    @Override
+                    public void onProjectFinish() {
+                        finishLatch.countDown();
+                    }
+                })
+                .add(REJECTED)
+                .add(SUCCESSOR).after(REJECTED)
+                .create();
+        Task rejected = project.getTask(REJECTED);
+
+        project.start();
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        //抛到执行线程中的异常发生在Project结束之后，稍等再检查
+        Thread.sleep(100);
+
+        assertTrue(String.valueOf(rejected.getFailure()), rejected.getFailure() instanceof IllegalArgumentException);
+        assertTrue(rejected.getFailure().getMessage().contains(REJECTED));
+        assertEquals(0, mSuccessorRunCount.get());
+        assertNull(mUncaught[0]);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.android.alpha;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectTest {
+    private static final int PREDECESSOR_COUNT = 32;
+    private static final int ROUNDS = 200;
+
+    @Before
+    public void setUp() {
+        AlphaConfig.setLoggable(false);
+    }
+
+    /**
+     * 紧前{@code Task}在IO线程池中通过栅栏同时结束，紧后{@code Task}只能被启动一次。
+     */
+    @Test(timeout = 60000)
+    public void testFanInSuccessorDispatchedOnce() throws Exception {
+        List<AtomicInteger> runCounts = new ArrayList<AtomicInteger>();
+        List<AtomicInteger> finishCounts = new ArrayList<AtomicInteger>();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final CyclicBarrier barrier = new CyclicBarrier(PREDECESSOR_COUNT);
+            final AtomicInteger runCount = new AtomicInteger();
+            final AtomicInteger finishCount = new AtomicInteger();
+            final CountDownLatch finishLatch = new CountDownLatch(1);
+            runCounts.add(runCount);
+            finishCounts.add(finishCount);
+
+            Project.Builder builder = new Project.Builder();
+            builder.setOnProjectExecuteListener(new OnProjectExecuteListener() {
+                @Override
+                public void onProjectStart() {
+                }
+
+                @Override
+                public void onTaskFinish(String taskName) {
+                }
+
+                @Override
+                public void onProjectFinish() {
+                    finishCount.incrementAndGet();
+                    finishLatch.countDown();
+                }
+            });
+
+            Task[] predecessors = new Task[PREDECESSOR_COUNT];
+            for (int i = 0; i < PREDECESSOR_COUNT; i++) {
+                predecessors[i] = new Task("predecessor" + i) {
+                    @Override
+                    public void run() {
+                        try {
+                            barrier.await(10, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                };
+                //IO线程池的线程数不受限制，所有紧前Task可以同时在栅栏处等待
+                predecessors[i].setExecutorName(AlphaConfig.EXECUTOR_IO);
+                builder.add(predecessors[i]);
+            }
+
+            builder.add(new Task("successor") {
+                @Override
+                public void run() {
+                    runCount.incrementAndGet();
+                }
+            }).after(predecessors);
+
+            builder.create().start();
+            assertTrue("project not finished in round " + round, finishLatch.await(10, TimeUnit.SECONDS));
+        }
+
+        //重复启动可能发生在Project结束之后，稍等再检查
+        Thread.sleep(200);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            assertEquals("successor run count in round " + round, 1, runCounts.get(round).get());
+            assertEquals("project finish count in round " + round, 1, finishCounts.get(round).get());
+        }
+    }
+
+    /**
+     * 在onProjectStart()中取消{@code Project}，仍然会回调一次onProjectFinish()，被取消的{@code Task}不会执行也不会回调
+     * onTaskFinish()。
+     */
+    @Test(timeout = 10000)
+    public void testCancelDuringProjectStart() throws Exception {
+        final AtomicInteger runCount = new AtomicInteger();
+        final AtomicInteger finishCount = new AtomicInteger();
+        final List<String> finishedTasks = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+        final Project[] project = new Project[1];
+
+        Project.Builder builder = new Project.Builder();
+        builder.setOnProjectExecuteListener(new OnProjectExecuteListener() {
+            @Override
+            public void onProjectStart() {
+                project[0].cancel();
+            }
+
+            @Override
+            public void onTaskFinish(String taskName) {
+                finishedTasks.add(taskName);
+            }
+
+            @Override
+            public void onProjectFinish() {
+                finishCount.incrementAndGet();
+                finishLatch.countDown();
+            }
+        });
+        builder.add(new Task("a") {
+            @Override
+            public void run() {
+                runCount.incrementAndGet();
+            }
+        });
+        project[0] = builder.create();
+        project[0].start();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, finishCount.get());
+        assertEquals(0, runCount.get());
+        assertTrue(project[0].isCancelled());
+        assertFalse(finishedTasks.toString(), finishedTasks.contains("a"));
+    }
+
+    /**
+     * 默认的{@link Project#FAILURE_POLICY_THROW}下，{@code Task}抛出{@code Error}时{@code Project}仍然会结束，
+     * 紧后{@code Task}不会执行，异常随后抛到执行它的线程中。
+     */
+    @Test(timeout = 10000)
+    public void testThrowingTaskFinishesProject() throws Exception {
+        final Error error = new NoClassDefFoundError("com.example.Missing");
+        final AtomicInteger successorRunCount = new AtomicInteger();
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+        final CountDownLatch uncaughtLatch = new CountDownLatch(1);
+        final Throwable[] uncaught = new Throwable[1];
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                uncaught[0] = e;
+                uncaughtLatch.countDown();
+            }
+        });
+
+        try {
+            Project.Builder builder = new Project.Builder();
+            builder.setOnProjectExecuteListener(new OnProjectExecuteListener() {
+                @Override
+                public void onProjectStart() {
+                }
+
+                @Override
+                public void onTaskFinish(String taskName) {
+                }
+
+                @Override
+                public void onProjectFinish() {
+                    finishLatch.countDown();
+                }
+            });
+            Task failing = new Task("failing") {
+                @Override
+                public void run() {
+                    throw error;
+                }
+            };
+            builder.add(failing);
+            builder.add(new Task("successor") {
+                @Override
+                public void run() {
+                    successorRunCount.incrementAndGet();
+                }
+            }).after(failing);
+            builder.create().start();
+
+            assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+            assertTrue(uncaughtLatch.await(5, TimeUnit.SECONDS));
+            assertSame(error, uncaught[0]);
+            assertSame(error, failing.getFailure().getCause());
+            assertEquals(0, successorRunCount.get());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    /**
+     * 从模板创建的{@code Project}中，嵌套{@code Project}的耗时仍然汇总到外层{@code Project}的监控记录中，
+     * 嵌套{@code Project}自己的{@code Task}汇总到它自己的记录中，同时执行的实例互不影响。
+     */
+    @Test(timeout = 10000)
+    public void testTemplateCollectsNestedProjectRecords() throws Exception {
+        ITaskCreator creator = new ITaskCreator() {
+            @Override
+            public Task createTask(String taskName) {
+                return new Task(taskName) {
+                    @Override
+                    public void run() {
+                    }
+                };
+            }
+        };
+
+        List<Map<String, Long>> outerRecords = Collections.synchronizedList(new ArrayList<Map<String, Long>>());
+        List<Map<String, Long>> innerRecords = Collections.synchronizedList(new ArrayList<Map<String, Long>>());
+        CountDownLatch finishLatch = new CountDownLatch(2);
+        Project inner = new Project.Builder()
+                .withTaskCreator(creator)
+                .setProjectName("inner")
+                .setOnGetMonitorRecordCallback(new RecordCollector(innerRecords, null))
+                .add("b")
+                .create();
+        ProjectTemplate template = new Project.Builder()
+                .withTaskCreator(creator)
+                .setOnGetMonitorRecordCallback(new RecordCollector(outerRecords, finishLatch))
+                .add("a")
+                .add(inner)
+                .createTemplate();
+
+        template.newProject().start();
+        template.newProject().start();
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, outerRecords.size());
+        assertEquals(2, innerRecords.size());
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, Long> outer = outerRecords.get(i);
+            assertTrue(outer.toString(), outer.containsKey("a"));
+            assertTrue(outer.toString(), outer.containsKey("inner"));
+            assertTrue(innerRecords.get(i).toString(), innerRecords.get(i).containsKey("b"));
+        }
+    }
+
+    private static class RecordCollector implements OnGetMonitorRecordCallback {
+        private final List<Map<String, Long>> mRecords;
+        private final CountDownLatch mFinishLatch;
+
+        RecordCollector(List<Map<String, Long>> records, CountDownLatch finishLatch) {
+            mRecords = records;
+            mFinishLatch = finishLatch;
+        }
+
+        @Override
+        public void onGetTaskExecuteRecord(Map<String, Long> result) {
+            mRecords.add(result);
+
+            if (mFinishLatch != null) {
+                mFinishLatch.countDown();
+            }
+        }
+
+        @Override
+        public void onGetProjectExecuteTime(long costTime) {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.android.alpha;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StartupConfigTest {
+    private static final String MAIN_PROCESS = "com.alibaba.android.alpha.test";
+    private static final int TASK_COUNT = 30;
+    private static final int BENCHMARK_ROUNDS = 20;
+
+    private final List<String> mCreatedTasks = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ITaskCreator mCreator = new ITaskCreator() {
+        @Override
+        public Task createTask(final String taskName) {
+            mCreatedTasks.add(taskName);
+            return new Task(taskName) {
+                @Override
+                public void run() {
+                }
+            };
+        }
+    };
+
+    @Before
+    public void setUp() {
+        AlphaConfig.setLoggable(false);
+    }
+
+    @Test
+    public void testOnlyCurrentProcessTasksCreated() {
+        StartupConfig config = new StartupConfig();
+        config.addProject(AlphaManager.MAIN_PROCESS_MODE, null, false, false, mCreator);
+        config.addTask("main0", null, 0, 0, false, null);
+        config.addTask("main1", "main0", 0, 0, false, null);
+        config.addProject(AlphaManager.SECONDARY_PROCESS_MODE, null, false, false, mCreator);
+        config.addTask("secondary0", null, 0, 0, false, null);
+
+        List<ConfigParser.ProjectInfo> projects = config.createProjects(new ConfigParser(MAIN_PROCESS, true));
+
+        assertEquals(1, projects.size());
+        assertEquals(2, mCreatedTasks.size());
+        assertTrue(mCreatedTasks.contains("main0"));
+        assertTrue(mCreatedTasks.contains("main1"));
+    }
+
+    @Test
+    public void testLazyProjectCreatesTasksWhenExecuted() throws Exception {
+        StartupConfig config = new StartupConfig();
+        config.addProject(AlphaManager.ALL_PROCESS_MODE, null, false, true, mCreator);
+        config.addTask("lazy0", null, 0, 0, false, null);
+        config.addTask("lazy1", "lazy0", 0, 0, false, null);
+
+        Task project = config.createProjects(new ConfigParser(MAIN_PROCESS, true)).get(0).project;
+        assertTrue(mCreatedTasks.isEmpty());
+
+        assertTrue(startAndWait(project));
+        assertEquals(2, mCreatedTasks.size());
+    }
+
+    /**
+     * 从描述启动流程到第一个{@code task}开始执行的耗时，对应{@code Application.onCreate()}到第一次派发，
+     * 配置中包含另一个进程的同样数量的{@code task}。第一轮是冷启动，之后的轮次取平均值。
+     */
+    @Test
+    public void benchmarkFirstDispatch() throws Exception {
+        long coldTime = measureFirstDispatch();
+        long totalTime = 0;
+
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            totalTime += measureFirstDispatch();
+        }
+
+        System.out.println("first dispatch of " + TASK_COUNT + " tasks, cold: "
+                + TimeUnit.NANOSECONDS.toMicros(coldTime) + "us, warm: "
+                + TimeUnit.NANOSECONDS.toMicros(totalTime / BENCHMARK_ROUNDS) + "us");
+    }
+
+    private long measureFirstDispatch() throws Exception {
+        final CountDownLatch firstRun = new CountDownLatch(1);
+        final long[] firstRunTime = new long[1];
+        ITaskCreator creator = new ITaskCreator() {
+            @Override
+            public Task createTask(String taskName) {
+                return new FirstRunTask(firstRun, firstRunTime);
+            }
+        };
+
+        long startTime = System.nanoTime();
+        StartupConfig config = new StartupConfig();
+        addChain(config, AlphaManager.MAIN_PROCESS_MODE, creator, "main");
+        addChain(config, AlphaManager.SECONDARY_PROCESS_MODE, creator, "secondary");
+        List<ConfigParser.ProjectInfo> projects = config.createProjects(new ConfigParser(MAIN_PROCESS, true));
+
+        assertEquals(1, projects.size());
+        projects.get(0).project.start();
+        assertTrue(firstRun.await(5, TimeUnit.SECONDS));
+        return firstRunTime[0] - startTime;
+    }
+
+    private void addChain(StartupConfig config, int mode, ITaskCreator creator, String prefix) {
+        config.addProject(mode, null, false, false, creator);
+
+        for (int i = 0; i < TASK_COUNT; i++) {
+            config.addTask(prefix + i, i > 0 ? prefix + (i - 1) : null, 0, 0, false, null);
+        }
+    }
+
+    private boolean startAndWait(Task project) throws InterruptedException {
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+        ((Project) project).addOnProjectExecuteListener(new OnProjectExecuteListener() {
+            @Override
+            public void onProjectStart() {
+            }
+
+            @Override
+            public void onTaskFinish(String taskName) {
+            }
+
+            @Override
+            public void onProjectFinish() {
+                finishLatch.countDown();
+            }
+        });
+
+        project.start();
+        return finishLatch.await(5, TimeUnit.SECONDS);
+    }
+
+    private static class FirstRunTask extends Task {
+        private final CountDownLatch mFirstRun;
+        private final long[] mFirstRunTime;
+
+        FirstRunTask(CountDownLatch firstRun, long[] firstRunTime) {
+            super("FirstRunTask");
+            mFirstRun = firstRun;
+            mFirstRunTime = firstRunTime;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mFirstRunTime) {
+                if (mFirstRunTime[0] == 0) {
+                    mFirstRunTime[0] = System.nanoTime();
+                    mFirstRun.countDown();
+                }
+            }
+        }
+    }
+}